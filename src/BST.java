@@ -1,9 +1,36 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Spliterator;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Simple BST used to index City records by name. Equal keys go to the LEFT.
  * Deletion replaces a node with the maximum from the left subtree.
- * 
+ *
+ * An optional balanced mode keeps the tree AVL-balanced. Rotations may then
+ * move an equal key into a RIGHT subtree, so in that mode ties are searched
+ * on both sides; inorder order and duplicate handling are unchanged.
+ *
+ * An optional grouped mode keeps one node per distinct key; later equal
+ * keys are appended to that node's group, so a heavily duplicated key costs
+ * one node instead of a long left chain. Inorder order is unchanged (newest
+ * equal key first). Levels report the node's level for every member, or,
+ * with CHAIN_LEVELS, render the group as a left chain hanging under the
+ * node (the group's oldest key on top, its left subtree below the chain).
+ * That is a rendering, not the plain tree's levels: a plain BST puts a
+ * duplicate at the bottom of the node's left subtree, so the two agree
+ * only while each key's duplicates arrive before any smaller key lands
+ * under it. Use a plain BST where print() must match one exactly.
+ *
+ * An optional prefix key function maps each key to a long whose unsigned
+ * order agrees with compareTo (a &lt; b implies pk(a) &lt;= pk(b)). Nodes
+ * cache it, and searches compare the longs first, so the key itself is
+ * only touched on prefix ties.
+ *
  * @author Parth Mehta (pmehta24)
  * @author Anurag Pokala (anuragp34)
  * @version 2025-10-06
@@ -14,70 +41,177 @@ class BST<T extends Comparable<? super T>> {
     private static final class Node<E> {
         E key;
         Node<E> left, right;
-        Node(E k) { this.key = k; }
+        int height = 1;     // maintained in balanced mode only
+        int count = 1;      // keys in this subtree
+        Object[] more;      // grouped mode: later equal keys, oldest first
+        int moreCount;
+        long pk;            // cached prefix key (0 without a prefix function)
+        Node(E k, long pk) { this.key = k; this.pk = pk; }
     }
 
+    /** Option: keep the tree AVL-balanced. */
+    static final int BALANCED = 1;
+    /** Option: one node per distinct key, duplicates grouped in it. */
+    static final int GROUPED = 2;
+    /** Option (with GROUPED): render group members as a left chain. */
+    static final int CHAIN_LEVELS = 4;
+
     // ---- fields ----
+    private final boolean balanced;
+    private final boolean grouped;
+    private final boolean chainLevels;
+    private final ToLongFunction<? super T> prefix;
     private Node<T> root;
     private int size;
 
+    /** Creates a plain (unbalanced) BST. */
+    public BST() { this(0); }
+
+    /**
+     * Creates a BST.
+     * @param balanced true to keep the tree AVL-balanced
+     */
+    public BST(boolean balanced) { this(balanced ? BALANCED : 0); }
+
+    /**
+     * Creates a BST.
+     * @param options bitwise OR of BALANCED, GROUPED, CHAIN_LEVELS
+     */
+    public BST(int options) { this(options, null); }
+
+    /**
+     * Creates a BST whose searches compare cached prefix keys first.
+     * @param options bitwise OR of BALANCED, GROUPED, CHAIN_LEVELS
+     * @param prefix  order-preserving prefix key, or null for none
+     */
+    public BST(int options, ToLongFunction<? super T> prefix) {
+        this.prefix = prefix;
+        this.balanced = (options & BALANCED) != 0;
+        this.grouped = (options & GROUPED) != 0;
+        this.chainLevels = grouped && (options & CHAIN_LEVELS) != 0;
+    }
+
     // ---- basic ops ----
     public void clear() { root = null; size = 0; }
     public boolean isEmpty() { return size == 0; }
     public int size() { return size; }
+    public boolean isBalanced() { return balanced; }
+    public boolean isGrouped() { return grouped; }
 
     /** Insert one key (duplicates allowed; equals go LEFT). */
     public void insert(T x) {
         if (x == null) throw new IllegalArgumentException("null key");
-        root = insertRec(root, x);
+        if (balanced) {
+            root = insertAvl(root, x, pk(x));
+        }
+        else {
+            insertPlain(x);
+        }
         size = size + 1;
     }
 
-    private Node<T> insertRec(Node<T> n, T x) {
-        if (n == null) return new Node<>(x);
-        int cmp = x.compareTo(n.key);
+    // iterative so that sorted input cannot overflow the stack
+    private void insertPlain(T x) {
+        long xk = pk(x);
+        Node<T> fresh = new Node<>(x, xk);
+        if (root == null) { root = fresh; return; }
+        Node<T> n = root;
+        while (true) {
+            n.count = n.count + 1;
+            int cmp = cmp(x, xk, n);
+            if (cmp == 0 && grouped) { append(n, x); return; }
+            if (cmp <= 0) {                          // equals-left
+                if (n.left == null) { n.left = fresh; return; }
+                n = n.left;
+            }
+            else {
+                if (n.right == null) { n.right = fresh; return; }
+                n = n.right;
+            }
+        }
+    }
+
+    private Node<T> insertAvl(Node<T> n, T x, long xk) {
+        if (n == null) return new Node<>(x, xk);
+        int cmp = cmp(x, xk, n);
+        if (cmp == 0 && grouped) {
+            append(n, x);
+            fix(n);
+            return n;
+        }
         if (cmp <= 0) {
-            n.left = insertRec(n.left, x);   // equals-left
-        } else {
-            n.right = insertRec(n.right, x);
+            n.left = insertAvl(n.left, x, xk);   // equals-left
         }
-        return n;
+        else {
+            n.right = insertAvl(n.right, x, xk);
+        }
+        return rebalance(n);
     }
 
-    /** Remove one occurrence of key; returns true iff something was removed. */
-    public boolean remove(T key) {
-        if (key == null) return false;
-        RemoveRes<T> r = removeRec(root, key);
-        root = r.newRoot;
-        if (r.removed) { size = size - 1; }
-        return r.removed;
+    private static void append(Node<?> n, Object x) {
+        if (n.more == null) {
+            n.more = new Object[2];
+        }
+        else if (n.moreCount == n.more.length) {
+            n.more = Arrays.copyOf(n.more, n.moreCount * 2);
+        }
+        n.more[n.moreCount] = x;
+        n.moreCount = n.moreCount + 1;
     }
 
-    private static final class RemoveRes<E> {
-        final Node<E> newRoot;
-        final boolean removed;
-        RemoveRes(Node<E> r, boolean rem) { this.newRoot = r; this.removed = rem; }
+    /** Keys stored in this node itself (1 unless grouped). */
+    private static int own(Node<?> n) { return 1 + n.moreCount; }
+
+    /** The j-th key of a node's group in inorder order (newest first). */
+    @SuppressWarnings("unchecked")
+    private static <E> E member(Node<E> n, int j) {
+        return (j < n.moreCount) ? (E) n.more[n.moreCount - 1 - j] : n.key;
     }
 
-    private RemoveRes<T> removeRec(Node<T> n, T key) {
-        if (n == null) return new RemoveRes<>(null, false);
-        int cmp = key.compareTo(n.key);
-        if (cmp < 0) {
-            RemoveRes<T> rr = removeRec(n.left, key);
-            n.left = rr.newRoot;
-            return new RemoveRes<>(n, rr.removed);
-        } else if (cmp > 0) {
-            RemoveRes<T> rr = removeRec(n.right, key);
-            n.right = rr.newRoot;
-            return new RemoveRes<>(n, rr.removed);
-        } else {
-            if (n.left == null) return new RemoveRes<>(n.right, true);
-            if (n.right == null) return new RemoveRes<>(n.left, true);
-            Node<T> pred = getMaxNode(n.left);
-            n.key = pred.key;
-            n.left = deleteMax(n.left);
-            return new RemoveRes<>(n, true);
+    /** Level of a node's left child (deeper under a rendered chain). */
+    private int leftLevel(Node<?> n, int level) {
+        return level + 1 + (chainLevels ? n.moreCount : 0);
+    }
+
+    /** Moves pred's whole group into n (node replacement on delete). */
+    private static <E> void takeGroup(Node<E> n, Node<E> pred) {
+        n.key = pred.key;
+        n.pk = pred.pk;
+        n.more = pred.more;
+        n.moreCount = pred.moreCount;
+    }
+
+    /**
+     * Finds a group member matching the predicate.
+     * @return -1 for the node key, i for more[i], -2 when none
+     */
+    private static <E> int findInGroup(Node<E> n,
+                                       java.util.function.Predicate<E> match) {
+        if (match.test(n.key)) return -1;
+        for (int i = 0; i < n.moreCount; i++) {
+            @SuppressWarnings("unchecked")
+            E e = (E) n.more[i];
+            if (match.test(e)) return i;
+        }
+        return -2;
+    }
+
+    /** Drops one member of a group with at least two members. */
+    @SuppressWarnings("unchecked")
+    private static <E> void removeFromGroup(Node<E> n, int idx) {
+        if (idx == -1) {
+            n.key = (E) n.more[0];
+            idx = 0;
         }
+        System.arraycopy(n.more, idx + 1, n.more, idx, n.moreCount - idx - 1);
+        n.moreCount = n.moreCount - 1;
+        n.more[n.moreCount] = null;
+    }
+
+    /** Remove one occurrence of key; returns true iff something was removed. */
+    public boolean remove(T key) {
+        if (key == null) return false;
+        return removeMatching(key, k -> true);
     }
 
     private Node<T> getMaxNode(Node<T> n) {
@@ -88,31 +222,519 @@ class BST<T extends Comparable<? super T>> {
 
     private Node<T> deleteMax(Node<T> n) {
         if (n.right == null) return n.left;
+        if (!balanced) {
+            int gone = own(getMaxNode(n));
+            Node<T> parent = n;
+            parent.count = parent.count - gone;
+            while (parent.right.right != null) {
+                parent = parent.right;
+                parent.count = parent.count - gone;
+            }
+            parent.right = parent.right.left;
+            return n;
+        }
         n.right = deleteMax(n.right);
+        return rebalance(n);
+    }
+
+    private long pk(T x) {
+        return (prefix == null) ? 0L : prefix.applyAsLong(x);
+    }
+
+    /** x.compareTo(n.key), decided by the cached prefix keys if they differ. */
+    private int cmp(T x, long xk, Node<T> n) {
+        if (prefix != null && xk != n.pk) {
+            return Long.compareUnsigned(xk, n.pk);
+        }
+        return x.compareTo(n.key);
+    }
+
+    /**
+     * Replaces the contents with a balanced tree over {@code sorted}, in
+     * O(n). The array order becomes the inorder order, so equal keys must
+     * already be newest first. In plain mode every node is the last of its
+     * run of equal keys, which keeps equal keys out of right subtrees
+     * (equals-left); the run boundary nearest the middle is taken, so only
+     * long runs cost balance. Balanced and grouped trees split at the exact
+     * middle (of the distinct keys, when grouped).
+     *
+     * @param sorted keys in non-decreasing order
+     * @throws IllegalArgumentException when the keys are out of order
+     */
+    public void buildFromSorted(T[] sorted) {
+        int n = sorted.length;
+        for (int i = 1; i < n; i++) {
+            if (sorted[i - 1].compareTo(sorted[i]) > 0) {
+                throw new IllegalArgumentException("input not sorted");
+            }
+        }
+        root = null;
+        size = n;
+        if (n == 0) return;
+        if (grouped) {
+            @SuppressWarnings("unchecked")
+            Node<T>[] nodes = (Node<T>[]) new Node<?>[n];
+            int m = 0;
+            int i = 0;
+            while (i < n) {
+                int j = i;
+                while (j + 1 < n && sorted[j + 1].compareTo(sorted[i]) == 0) {
+                    j = j + 1;
+                }
+                // inorder i..j is newest first; the node key is the oldest
+                Node<T> g = new Node<>(sorted[j], pk(sorted[j]));
+                if (j > i) {
+                    g.more = new Object[j - i];
+                    for (int k = 0; k < j - i; k++) {
+                        g.more[k] = sorted[j - 1 - k];
+                    }
+                    g.moreCount = j - i;
+                }
+                nodes[m++] = g;
+                i = j + 1;
+            }
+            root = buildMiddle(nodes, 0, m);
+        }
+        else if (balanced) {
+            @SuppressWarnings("unchecked")
+            Node<T>[] nodes = (Node<T>[]) new Node<?>[n];
+            for (int i = 0; i < n; i++) {
+                nodes[i] = new Node<>(sorted[i], pk(sorted[i]));
+            }
+            root = buildMiddle(nodes, 0, n);
+        }
+        else {
+            root = buildRunEnds(sorted);
+        }
+    }
+
+    // exact middle split; depth is O(log n)
+    private Node<T> buildMiddle(Node<T>[] nodes, int lo, int hi) {
+        if (lo >= hi) return null;
+        int mid = (lo + hi) >>> 1;
+        Node<T> n = nodes[mid];
+        n.left = buildMiddle(nodes, lo, mid);
+        n.right = buildMiddle(nodes, mid + 1, hi);
+        fix(n);
         return n;
     }
 
+    // plain mode: iterative, since long equal runs make deep left chains
+    private Node<T> buildRunEnds(T[] a) {
+        int n = a.length;
+        int[] runStart = new int[n];
+        int[] runEnd = new int[n];
+        for (int i = 0; i < n; i++) {
+            boolean same = i > 0 && a[i - 1].compareTo(a[i]) == 0;
+            runStart[i] = same ? runStart[i - 1] : i;
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            boolean same = i + 1 < n && runStart[i + 1] == runStart[i];
+            runEnd[i] = same ? runEnd[i + 1] : i;
+        }
+        // pending ranges [lo, hi) with the parent slot they fill
+        int[] los = new int[64];
+        int[] his = new int[64];
+        @SuppressWarnings("unchecked")
+        Node<T>[] parents = (Node<T>[]) new Node<?>[64];
+        boolean[] lefts = new boolean[64];
+        Node<T> result = null;
+        los[0] = 0;
+        his[0] = n;
+        int top = 1;
+        while (top > 0) {
+            top = top - 1;
+            int lo = los[top];
+            int hi = his[top];
+            Node<T> parent = parents[top];
+            boolean left = lefts[top];
+            parents[top] = null;
+            int mid = (lo + hi) >>> 1;
+            // a node must end its run; take the run end nearest mid
+            int r = Math.min(runEnd[mid], hi - 1);
+            int before = Math.max(runStart[mid], lo) - 1;
+            if (before >= lo && mid - before < r - mid) {
+                r = before;
+            }
+            Node<T> node = new Node<>(a[r], pk(a[r]));
+            node.count = hi - lo;
+            if (parent == null) result = node;
+            else if (left) parent.left = node;
+            else parent.right = node;
+            if (top + 2 > los.length) {
+                los = Arrays.copyOf(los, top * 2);
+                his = Arrays.copyOf(his, top * 2);
+                parents = Arrays.copyOf(parents, top * 2);
+                lefts = Arrays.copyOf(lefts, top * 2);
+            }
+            if (r > lo) {
+                los[top] = lo;
+                his[top] = r;
+                parents[top] = node;
+                lefts[top] = true;
+                top = top + 1;
+            }
+            if (r + 1 < hi) {
+                los[top] = r + 1;
+                his[top] = hi;
+                parents[top] = node;
+                lefts[top] = false;
+                top = top + 1;
+            }
+        }
+        return result;
+    }
+
     /** Membership by key equality. */
     public boolean contains(T key) {
+        long kk = pk(key);
         Node<T> cur = root;
         while (cur != null) {
-            int cmp = key.compareTo(cur.key);
+            int cmp = cmp(key, kk, cur);
             if (cmp == 0) return true;
             cur = (cmp < 0) ? cur.left : cur.right;
         }
         return false;
     }
 
+    /**
+     * Returns the number of levels (0 for an empty tree).
+     * @return tree height
+     */
+    public int height() {
+        final int[] max = new int[] { 0 };
+        inorder((lvl, k) -> {
+            max[0] = Math.max(max[0], lvl + 1);
+            return true;
+        });
+        return max[0];
+    }
+
     /** Inorder traversal with level (root = 0). */
     public void inorderWithLevels(BiConsumer<Integer, T> visit) {
-        inorderRec(root, 0, visit);
+        inorderRange(0, size, visit);
     }
 
-    private void inorderRec(Node<T> n, int level, BiConsumer<Integer, T> visit) {
-        if (n == null) return;
-        inorderRec(n.left, level + 1, visit);
-        visit.accept(level, n.key);
-        inorderRec(n.right, level + 1, visit);
+    /**
+     * Inorder traversal with levels over positions [from, from + count).
+     * Subtree counts locate the start in O(depth), so the cost is
+     * O(depth + count).
+     */
+    public void inorderRange(int from, int count, BiConsumer<Integer, T> visit) {
+        inorder(from, count, (lvl, k) -> {
+            visit.accept(lvl, k);
+            return true;
+        });
+    }
+
+    /**
+     * Inorder traversal with levels, without boxing; stops when the
+     * visitor returns false.
+     * @return false when the visitor stopped the traversal
+     */
+    public boolean inorder(LevelVisitor<? super T> visit) {
+        return inorder(0, size, visit);
+    }
+
+    /**
+     * {@link #inorder(LevelVisitor)} over positions [from, from + count),
+     * in O(depth + count).
+     * @return false when the visitor stopped the traversal
+     */
+    public boolean inorder(int from, int count, LevelVisitor<? super T> visit) {
+        if (count <= 0) return true;
+        LevelCursor<T> c = inorderCursor(from);
+        for (int left = count; left > 0 && c.advance(); left--) {
+            if (!visit.visit(c.level(), c.item())) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Inorder cursor starting at position from; subtree counts locate the
+     * start in O(depth). The cursor is invalid once the tree changes.
+     * @return the cursor, empty when from is out of range
+     */
+    public LevelCursor<T> inorderCursor(int from) {
+        return new InorderCursor(from);
+    }
+
+    /** Iterative inorder walk; an explicit stack, since a plain tree
+     *  built from sorted input is a list. */
+    private final class InorderCursor implements LevelCursor<T> {
+        @SuppressWarnings("unchecked")
+        private Node<T>[] nodes = (Node<T>[]) new Node<?>[16];
+        private int[] levels = new int[16];
+        private int top;
+        private Node<T> node;            // node holding the current item
+        private int nodeLevel;
+        private int j;                   // group member index in node
+        private int skip;                // group members to skip at first pop
+        private int level;
+        private T item;
+
+        InorderCursor(int from) {
+            if (from < 0) return;
+            // push the ancestors whose key comes at or after position 'from'
+            Node<T> n = root;
+            int lvl = 0;
+            int idx = from;
+            while (n != null) {
+                int ls = cnt(n.left);
+                if (idx >= ls + own(n)) {
+                    idx = idx - ls - own(n);
+                    n = n.right;
+                    lvl = lvl + 1;
+                    continue;
+                }
+                push(n, lvl);
+                if (idx >= ls) { skip = idx - ls; break; }
+                lvl = leftLevel(n, lvl);
+                n = n.left;
+            }
+        }
+
+        private void push(Node<T> n, int lvl) {
+            if (top == nodes.length) {
+                nodes = Arrays.copyOf(nodes, top * 2);
+                levels = Arrays.copyOf(levels, top * 2);
+            }
+            nodes[top] = n;
+            levels[top] = lvl;
+            top = top + 1;
+        }
+
+        @Override
+        public boolean advance() {
+            if (node != null) {
+                j = j + 1;
+                if (j < own(node)) {
+                    load();
+                    return true;
+                }
+                // the left spine of the right subtree comes next
+                int lvl = nodeLevel + 1;
+                for (Node<T> n = node.right; n != null; n = n.left) {
+                    push(n, lvl);
+                    lvl = leftLevel(n, lvl);
+                }
+            }
+            if (top == 0) {
+                node = null;
+                item = null;
+                return false;
+            }
+            top = top - 1;
+            node = nodes[top];
+            nodeLevel = levels[top];
+            nodes[top] = null;
+            j = skip;
+            skip = 0;
+            load();
+            return true;
+        }
+
+        private void load() {
+            item = member(node, j);
+            level = chainLevels ? nodeLevel + own(node) - 1 - j : nodeLevel;
+        }
+
+        @Override
+        public int level() { return level; }
+
+        @Override
+        public T item() { return item; }
+    }
+
+    /**
+     * Sequential stream of the keys in inorder order.
+     * @return the stream; the tree must not change while it runs
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Parallel stream of the keys; see {@link #spliterator()}.
+     * @return the stream; the tree must not change while it runs
+     */
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Spliterator over the keys in inorder order. Splits halve the
+     * remaining inorder positions, and each half seeks its start through
+     * the subtree counts in O(depth), so every part is SIZED exactly.
+     * @return the spliterator
+     */
+    public Spliterator<T> spliterator() {
+        return new Splitr(0, size);
+    }
+
+    /** Inorder positions [pos, end), walked by a lazily created cursor. */
+    private final class Splitr implements Spliterator<T> {
+        private int pos;
+        private final int end;
+        private LevelCursor<T> cur;
+
+        Splitr(int pos, int end) {
+            this.pos = pos;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (pos >= end) return false;
+            if (cur == null) {
+                cur = inorderCursor(pos);
+            }
+            cur.advance();
+            pos = pos + 1;
+            action.accept(cur.item());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (pos >= end) return;
+            if (cur == null) {
+                cur = inorderCursor(pos);
+            }
+            for (; pos < end && cur.advance(); pos++) {
+                action.accept(cur.item());
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (end - pos < 2) return null;
+            int mid = (pos + end) >>> 1;
+            Splitr prefix = new Splitr(pos, mid);
+            prefix.cur = cur;           // an open cursor stays with the prefix
+            cur = null;
+            pos = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - pos;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    /**
+     * Number of keys strictly less than {@code key}.
+     * @return rank of key
+     */
+    public int rank(T key) {
+        int r = 0;
+        long kk = pk(key);
+        Node<T> n = root;
+        while (n != null) {
+            if (cmp(key, kk, n) <= 0) {
+                n = n.left;
+            }
+            else {
+                r = r + cnt(n.left) + own(n);
+                n = n.right;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Key at inorder position i (0-based).
+     * @return the key, or null when i is out of range
+     */
+    public T select(int i) {
+        if (i < 0 || i >= size) return null;
+        Node<T> n = root;
+        while (true) {
+            int ls = cnt(n.left);
+            if (i < ls) {
+                n = n.left;
+            }
+            else if (i < ls + own(n)) {
+                return member(n, i - ls);
+            }
+            else {
+                i = i - ls - own(n);
+                n = n.right;
+            }
+        }
+    }
+
+    /**
+     * Visits every key equal to {@code key}, in inorder order. Only subtrees
+     * that can hold an equal key are entered, so the cost is
+     * O(depth + matches).
+     */
+    public void equalRange(T key, Consumer<? super T> visit) {
+        ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+        long kk = pk(key);
+        Node<T> n = root;
+        while (n != null || !stack.isEmpty()) {
+            while (n != null) {
+                int cmp = cmp(key, kk, n);
+                if (cmp < 0) {
+                    n = n.left;
+                }
+                else if (cmp > 0) {
+                    n = n.right;
+                }
+                else {
+                    stack.push(n);
+                    n = n.left;          // equals-left chain
+                }
+            }
+            if (stack.isEmpty()) return;
+            n = stack.pop();
+            for (int j = 0; j < own(n); j++) {
+                visit.accept(member(n, j));
+            }
+            // plain mode keeps equal keys out of right subtrees
+            n = balanced ? n.right : null;
+        }
+    }
+
+    /**
+     * Visits keys k with lo <= k < hi in inorder order, stopping after
+     * {@code limit} visits. Subtrees entirely below lo are skipped and the
+     * walk ends at the first key >= hi. A null bound is open.
+     * @return number of keys visited
+     */
+    public int range(T lo, T hi, int limit, Consumer<? super T> visit) {
+        ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+        long lk = (lo == null) ? 0L : pk(lo);
+        long hk = (hi == null) ? 0L : pk(hi);
+        Node<T> n = root;
+        int seen = 0;
+        while (seen < limit) {
+            while (n != null) {
+                if (lo != null && cmp(lo, lk, n) > 0) {
+                    n = n.right;         // n and its left side are below lo
+                }
+                else {
+                    stack.push(n);
+                    n = n.left;
+                }
+            }
+            if (stack.isEmpty()) break;
+            n = stack.pop();
+            if (hi != null && cmp(hi, hk, n) <= 0) break;
+            for (int j = 0; j < own(n) && seen < limit; j++) {
+                visit.accept(member(n, j));
+                seen = seen + 1;
+            }
+            n = n.right;
+        }
+        return seen;
     }
 
     /**
@@ -121,10 +743,18 @@ class BST<T extends Comparable<? super T>> {
      * if not a match, continue LEFT (equals-left invariant).
      */
     public boolean removeMatching(T target, java.util.function.Predicate<T> match) {
-        RemoveMatchRes<T> r = removeMatchRec(root, target, match);
-        root = r.newRoot;
-        if (r.removed) { size = size - 1; }
-        return r.removed;
+        boolean removed;
+        if (balanced) {
+            RemoveMatchRes<T> r =
+                removeMatchAvl(root, target, pk(target), match);
+            root = r.newRoot;
+            removed = r.removed;
+        }
+        else {
+            removed = removeMatchPlain(target, match);
+        }
+        if (removed) { size = size - 1; }
+        return removed;
     }
 
     private static final class RemoveMatchRes<E> {
@@ -132,28 +762,127 @@ class BST<T extends Comparable<? super T>> {
         RemoveMatchRes(Node<E> r, boolean rem) { this.newRoot = r; this.removed = rem; }
     }
 
-    private RemoveMatchRes<T> removeMatchRec(Node<T> n, T target,
+    private boolean removeMatchPlain(T target,
+                                     java.util.function.Predicate<T> match) {
+        long tk = pk(target);
+        Node<T> parent = null;
+        Node<T> n = root;
+        int idx = -1;
+        while (n != null) {
+            int cmp = cmp(target, tk, n);
+            if (cmp == 0 && grouped) {
+                idx = findInGroup(n, match);
+                if (idx == -2) return false;
+                break;
+            }
+            if (cmp == 0 && match.test(n.key)) break;
+            parent = n;
+            n = (cmp <= 0) ? n.left : n.right;
+        }
+        if (n == null) return false;
+        // found: one fewer key under every ancestor
+        for (Node<T> a = root; a != n; ) {
+            a.count = a.count - 1;
+            a = (cmp(target, tk, a) <= 0) ? a.left : a.right;
+        }
+        if (n.moreCount > 0) {
+            removeFromGroup(n, idx);
+            n.count = n.count - 1;
+            return true;
+        }
+        Node<T> repl;
+        if (n.left == null) repl = n.right;
+        else if (n.right == null) repl = n.left;
+        else {
+            Node<T> pred = getMaxNode(n.left);
+            takeGroup(n, pred);
+            n.left = deleteMax(n.left);
+            n.count = n.count - 1;
+            return true;
+        }
+        if (parent == null) root = repl;
+        else if (parent.left == n) parent.left = repl;
+        else parent.right = repl;
+        return true;
+    }
+
+    private RemoveMatchRes<T> removeMatchAvl(Node<T> n, T target, long tk,
                                              java.util.function.Predicate<T> match) {
         if (n == null) return new RemoveMatchRes<>(null, false);
-        int cmp = target.compareTo(n.key);
+        int cmp = cmp(target, tk, n);
+        RemoveMatchRes<T> rr;
         if (cmp < 0) {
-            RemoveMatchRes<T> rr = removeMatchRec(n.left, target, match);
-            n.left = rr.newRoot; return new RemoveMatchRes<>(n, rr.removed);
+            rr = removeMatchAvl(n.left, target, tk, match);
+            n.left = rr.newRoot;
         } else if (cmp > 0) {
-            RemoveMatchRes<T> rr = removeMatchRec(n.right, target, match);
-            n.right = rr.newRoot; return new RemoveMatchRes<>(n, rr.removed);
+            rr = removeMatchAvl(n.right, target, tk, match);
+            n.right = rr.newRoot;
+        } else if (grouped && n.moreCount > 0) {
+            int idx = findInGroup(n, match);
+            if (idx == -2) return new RemoveMatchRes<>(n, false);
+            removeFromGroup(n, idx);
+            fix(n);
+            return new RemoveMatchRes<>(n, true);
+        } else if (match.test(n.key)) {
+            if (n.left == null) return new RemoveMatchRes<>(n.right, true);
+            if (n.right == null) return new RemoveMatchRes<>(n.left, true);
+            Node<T> pred = getMaxNode(n.left);
+            takeGroup(n, pred);
+            n.left = deleteMax(n.left);
+            return new RemoveMatchRes<>(rebalance(n), true);
+        } else if (grouped) {
+            return new RemoveMatchRes<>(n, false);
         } else {
-            if (match.test(n.key)) {
-                if (n.left == null) return new RemoveMatchRes<>(n.right, true);
-                if (n.right == null) return new RemoveMatchRes<>(n.left, true);
-                Node<T> pred = getMaxNode(n.left);
-                n.key = pred.key;
-                n.left = deleteMax(n.left);
-                return new RemoveMatchRes<>(n, true);
-            } else {
-                RemoveMatchRes<T> rr = removeMatchRec(n.left, target, match);
-                n.left = rr.newRoot; return new RemoveMatchRes<>(n, rr.removed);
+            // rotations can park equal keys on either side
+            rr = removeMatchAvl(n.left, target, tk, match);
+            n.left = rr.newRoot;
+            if (!rr.removed) {
+                rr = removeMatchAvl(n.right, target, tk, match);
+                n.right = rr.newRoot;
             }
         }
+        return new RemoveMatchRes<>(rr.removed ? rebalance(n) : n, rr.removed);
+    }
+
+    // ---- AVL helpers ----
+    private static int h(Node<?> n) { return (n == null) ? 0 : n.height; }
+
+    private static int cnt(Node<?> n) { return (n == null) ? 0 : n.count; }
+
+    private static void fix(Node<?> n) {
+        n.height = 1 + Math.max(h(n.left), h(n.right));
+        n.count = own(n) + cnt(n.left) + cnt(n.right);
+    }
+
+    private Node<T> rotateRight(Node<T> n) {
+        Node<T> l = n.left;
+        n.left = l.right;
+        l.right = n;
+        fix(n);
+        fix(l);
+        return l;
+    }
+
+    private Node<T> rotateLeft(Node<T> n) {
+        Node<T> r = n.right;
+        n.right = r.left;
+        r.left = n;
+        fix(n);
+        fix(r);
+        return r;
+    }
+
+    private Node<T> rebalance(Node<T> n) {
+        fix(n);
+        int bal = h(n.left) - h(n.right);
+        if (bal > 1) {
+            if (h(n.left.left) < h(n.left.right)) n.left = rotateLeft(n.left);
+            return rotateRight(n);
+        }
+        if (bal < -1) {
+            if (h(n.right.right) < h(n.right.left)) n.right = rotateRight(n.right);
+            return rotateLeft(n);
+        }
+        return n;
     }
 }
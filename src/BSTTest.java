@@ -1043,5 +1043,515 @@ public class BSTTest extends TestCase
         assertFalse("Should not find B", t.contains(new City("B", 0, 0)));
         assertFalse("Should not find N", t.contains(new City("N", 0, 0)));
     }
-       
+
+    // ---------------------------- balanced mode ----------------------------
+
+    /**
+     * Sorted input stays logarithmic in balanced mode and a long chain in
+     * plain mode (which must not overflow the stack).
+     */
+    public void testBalancedSortedInputHeight()
+    {
+        BST<City> plain = new BST<>();
+        BST<City> avl = new BST<>(true);
+        for (int i = 0; i < 20000; i++)
+        {
+            String nm = String.format("N%06d", i);
+            plain.insert(new City(nm, i, i));
+            avl.insert(new City(nm, i, i));
+        }
+        assertEquals(20000, plain.height());
+        assertTrue(avl.height() <= 21);
+        StringBuilder a = new StringBuilder();
+        StringBuilder b = new StringBuilder();
+        plain.inorderWithLevels((lvl, c) -> a.append(c).append('\n'));
+        avl.inorderWithLevels((lvl, c) -> b.append(c).append('\n'));
+        assertEquals(a.toString(), b.toString());
+        assertTrue(plain.remove(new City("N019999", 0, 0)));
+        assertTrue(avl.isBalanced());
+        assertFalse(plain.isBalanced());
+    }
+
+    /**
+     * Balanced mode keeps duplicates and finds exact triples even after
+     * rotations move equal keys to the right.
+     */
+    public void testBalancedDuplicatesAndRemoveMatching()
+    {
+        BST<City> t = new BST<>(true);
+        for (int i = 0; i < 64; i++)
+        {
+            t.insert(new City("Dup", i, i));
+            t.insert(new City("A" + i, i, 100 + i));
+        }
+        assertEquals(128, t.size());
+        assertTrue(t.height() <= 9);
+        for (int i = 63; i >= 0; i--)
+        {
+            final int k = i;
+            assertTrue(t.removeMatching(new City("Dup", k, k),
+                c -> c.getX() == k && c.getY() == k));
+            assertFalse(t.removeMatching(new City("Dup", k, k),
+                c -> c.getX() == k && c.getY() == k));
+        }
+        assertEquals(64, t.size());
+        assertFalse(t.contains(new City("Dup", 0, 0)));
+        assertTrue(t.height() <= 8);
+    }
+
+    /**
+     * equalRange visits exactly the equal keys, in the same order a full
+     * inorder scan would, in both plain and balanced mode.
+     */
+    public void testEqualRangeMatchesFilteredInorder()
+    {
+        for (int mode = 0; mode < 2; mode++)
+        {
+            BST<City> t = new BST<>(mode == 1);
+            java.util.Random r = new java.util.Random(7);
+            for (int i = 0; i < 500; i++)
+            {
+                t.insert(new City("N" + r.nextInt(12), i, r.nextInt(99)));
+            }
+            for (int i = 0; i < 100; i++)
+            {
+                final int k = r.nextInt(500);
+                t.removeMatching(new City("N" + (k % 12), 0, 0),
+                    c -> c.getX() == k);
+            }
+            for (int k = 0; k < 13; k++)
+            {
+                final String nm = "N" + k;
+                StringBuilder want = new StringBuilder();
+                StringBuilder got = new StringBuilder();
+                t.inorderWithLevels((lvl, c) -> {
+                    if (c.getName().equals(nm))
+                    {
+                        want.append(c).append('\n');
+                    }
+                });
+                t.equalRange(new City(nm, 0, 0),
+                    c -> got.append(c).append('\n'));
+                assertEquals(want.toString(), got.toString());
+            }
+        }
+    }
+
+    /**
+     * range() equals a filtered inorder scan, honors open bounds and stops
+     * at the limit.
+     */
+    public void testRangeMatchesFilteredInorder()
+    {
+        for (int mode = 0; mode < 2; mode++)
+        {
+            BST<City> t = new BST<>(mode == 1);
+            java.util.Random r = new java.util.Random(11);
+            for (int i = 0; i < 300; i++)
+            {
+                t.insert(new City("" + (char) ('a' + r.nextInt(26))
+                    + (char) ('a' + r.nextInt(26)), i, i));
+            }
+            City lo = new City("f", 0, 0);
+            City hi = new City("mb", 0, 0);
+            StringBuilder want = new StringBuilder();
+            t.inorderWithLevels((lvl, c) -> {
+                if (c.compareTo(lo) >= 0 && c.compareTo(hi) < 0)
+                {
+                    want.append(c).append('\n');
+                }
+            });
+            StringBuilder got = new StringBuilder();
+            int n = t.range(lo, hi, Integer.MAX_VALUE,
+                c -> got.append(c).append('\n'));
+            assertEquals(want.toString(), got.toString());
+            assertEquals(want.toString().split("\n").length, n);
+
+            StringBuilder first = new StringBuilder();
+            assertEquals(5, t.range(lo, null, 5,
+                c -> first.append(c).append('\n')));
+            assertTrue(want.toString().startsWith(first.toString()));
+            assertEquals(300, t.range(null, null, 1000, c -> { }));
+            assertEquals(0, t.range(hi, lo, 10, c -> { }));
+        }
+    }
+
+    /**
+     * Subtree counts survive inserts, removals and rotations: rank, select
+     * and inorderRange agree with a full inorder listing.
+     */
+    public void testRankSelectAndInorderRange()
+    {
+        for (int mode = 0; mode < 2; mode++)
+        {
+            BST<City> t = new BST<>(mode == 1);
+            java.util.Random r = new java.util.Random(13);
+            for (int i = 0; i < 400; i++)
+            {
+                t.insert(new City("K" + r.nextInt(40), i, i));
+                if (i % 3 == 0)
+                {
+                    final int k = r.nextInt(i + 1);
+                    t.removeMatching(new City("K" + r.nextInt(40), 0, 0),
+                        c -> c.getX() <= k);
+                }
+            }
+            java.util.List<String> all = new java.util.ArrayList<>();
+            t.inorderWithLevels((lvl, c) -> all.add(lvl + " " + c));
+            assertEquals(t.size(), all.size());
+            for (int i = 0; i < all.size(); i++)
+            {
+                assertTrue(all.get(i).endsWith(" " + t.select(i)));
+            }
+            assertNull(t.select(all.size()));
+            assertNull(t.select(-1));
+            City k20 = new City("K20", 0, 0);
+            int rank = t.rank(k20);
+            for (int i = 0; i < all.size(); i++)
+            {
+                assertEquals(i < rank, t.select(i).compareTo(k20) < 0);
+            }
+            java.util.List<String> page = new java.util.ArrayList<>();
+            t.inorderRange(17, 25, (lvl, c) -> page.add(lvl + " " + c));
+            assertEquals(all.subList(17, 42), page);
+            page.clear();
+            t.inorderRange(all.size() - 2, 10,
+                (lvl, c) -> page.add(lvl + " " + c));
+            assertEquals(2, page.size());
+            page.clear();
+            t.inorderRange(all.size(), 10, (lvl, c) -> page.add("x"));
+            assertEquals(0, page.size());
+        }
+    }
+
+    /**
+     * Grouped mode keeps plain inorder order, counts and removal.
+     */
+    public void testGroupedMatchesPlainOrder()
+    {
+        for (int opts : new int[] {BST.GROUPED, BST.GROUPED | BST.BALANCED})
+        {
+            BST<City> plain = new BST<>();
+            BST<City> grouped = new BST<>(opts);
+            java.util.Random rnd = new java.util.Random(opts);
+            for (int i = 0; i < 3000; i++)
+            {
+                City c = new City("N" + rnd.nextInt(60), i, rnd.nextInt(50));
+                plain.insert(c);
+                grouped.insert(c);
+                if (i % 7 == 0)
+                {
+                    City gone = new City("N" + rnd.nextInt(60), 0, 0);
+                    int y = rnd.nextInt(50);
+                    java.util.function.Predicate<City> m =
+                        k -> k.getY() == y;
+                    assertEquals(plain.removeMatching(gone, m),
+                        grouped.removeMatching(gone, m));
+                }
+            }
+            assertEquals(plain.size(), grouped.size());
+            java.util.List<String> a = new java.util.ArrayList<>();
+            java.util.List<String> b = new java.util.ArrayList<>();
+            plain.inorderWithLevels((lvl, c) -> a.add(c.toString()));
+            grouped.inorderWithLevels((lvl, c) -> b.add(c.toString()));
+            assertEquals(a, b);
+            assertTrue(grouped.height() <= 61 || !grouped.isBalanced());
+            for (int i = 0; i < b.size(); i += 37)
+            {
+                assertEquals(b.get(i), grouped.select(i).toString());
+                java.util.List<String> page = new java.util.ArrayList<>();
+                grouped.inorderRange(i, 5, (lvl, c) -> page.add(c.toString()));
+                assertEquals(b.subList(i, Math.min(i + 5, b.size())), page);
+            }
+            City n7 = new City("N7", 0, 0);
+            assertEquals(plain.rank(n7), grouped.rank(n7));
+            java.util.List<City> eq = new java.util.ArrayList<>();
+            grouped.equalRange(n7, eq::add);
+            java.util.List<City> eqPlain = new java.util.ArrayList<>();
+            plain.equalRange(n7, eqPlain::add);
+            assertEquals(eqPlain, eq);
+        }
+    }
+
+    /**
+     * CHAIN_LEVELS renders a group as a left chain under its node.
+     */
+    public void testGroupedChainLevels()
+    {
+        BST<City> t = new BST<>(BST.GROUPED | BST.CHAIN_LEVELS);
+        t.insert(new City("B", 1, 1));
+        t.insert(new City("A", 2, 2));
+        t.insert(new City("B", 3, 3));
+        t.insert(new City("C", 4, 4));
+        t.insert(new City("B", 5, 5));
+        java.util.List<String> out = new java.util.ArrayList<>();
+        t.inorderWithLevels((lvl, c) -> out.add(lvl + " " + c));
+        assertEquals(java.util.Arrays.asList("3 A (2, 2)", "2 B (5, 5)",
+            "1 B (3, 3)", "0 B (1, 1)", "1 C (4, 4)"), out);
+        assertTrue(t.removeMatching(new City("B", 0, 0),
+            c -> c.getX() == 1));
+        out.clear();
+        t.inorderWithLevels((lvl, c) -> out.add(lvl + " " + c));
+        assertEquals(java.util.Arrays.asList("2 A (2, 2)", "1 B (5, 5)",
+            "0 B (3, 3)", "1 C (4, 4)"), out);
+        assertFalse(t.removeMatching(new City("B", 0, 0),
+            c -> c.getX() == 1));
+        assertEquals(4, t.size());
+    }
+
+    /**
+     * A prefix key function changes no results, only comparison cost.
+     */
+    public void testPrefixKeyMatchesPlainCompare()
+    {
+        for (int opts : new int[] {0, BST.BALANCED, BST.GROUPED})
+        {
+            BST<City> plain = new BST<>(opts);
+            BST<City> keyed =
+                new BST<>(opts, c -> City.prefixKey(c.getName()));
+            java.util.Random rnd = new java.util.Random(opts + 38);
+            String[] stems = {"Spring", "Springfield", "Springdale", "S",
+                "Springfiel", "Z\u00ffa", "Z\u0100", ""};
+            for (int i = 0; i < 4000; i++)
+            {
+                City c = new City(stems[rnd.nextInt(stems.length)]
+                    + rnd.nextInt(20), i, 0);
+                plain.insert(c);
+                keyed.insert(c);
+                if (i % 5 == 0)
+                {
+                    City t = new City(stems[rnd.nextInt(stems.length)]
+                        + rnd.nextInt(20), 0, 0);
+                    int x = rnd.nextInt(i + 1);
+                    assertEquals(plain.removeMatching(t, k -> k.getX() == x),
+                        keyed.removeMatching(t, k -> k.getX() == x));
+                    assertEquals(plain.contains(t), keyed.contains(t));
+                    assertEquals(plain.rank(t), keyed.rank(t));
+                }
+            }
+            java.util.List<String> a = new java.util.ArrayList<>();
+            java.util.List<String> b = new java.util.ArrayList<>();
+            plain.inorderWithLevels((lvl, c) -> a.add(lvl + " " + c));
+            keyed.inorderWithLevels((lvl, c) -> b.add(lvl + " " + c));
+            assertEquals(a, b);
+            City lo = new City("Springf", 0, 0);
+            City hi = new City("Z", 0, 0);
+            a.clear();
+            b.clear();
+            plain.range(lo, hi, 100, c -> a.add(c.toString()));
+            keyed.range(lo, hi, 100, c -> b.add(c.toString()));
+            assertEquals(a, b);
+        }
+    }
+
+    /**
+     * buildFromSorted keeps the array as inorder order, balances, and
+     * leaves a tree the usual operations still work on.
+     */
+    public void testBuildFromSorted()
+    {
+        java.util.Random rnd = new java.util.Random(43);
+        for (int opts : new int[] {0, BST.BALANCED, BST.GROUPED,
+            BST.GROUPED | BST.BALANCED})
+        {
+            City[] a = new City[5000];
+            for (int i = 0; i < a.length; i++)
+            {
+                a[i] = new City("K" + (1000 + rnd.nextInt(1500)), i, 0);
+            }
+            java.util.Arrays.sort(a);
+            BST<City> t = new BST<>(opts);
+            t.buildFromSorted(a);
+            assertEquals(a.length, t.size());
+            java.util.List<City> in = new java.util.ArrayList<>();
+            t.inorderWithLevels((lvl, c) -> in.add(c));
+            assertEquals(java.util.Arrays.asList(a), in);
+            // plain mode pays for equal runs (about 3 per name here)
+            assertTrue(t.height() <= ((opts == 0) ? 24 : 13));
+            for (int i = 0; i < a.length; i += 97)
+            {
+                assertSame(a[i], t.select(i));
+            }
+            for (int i = 0; i < a.length; i += 97)
+            {
+                java.util.List<City> eq = new java.util.ArrayList<>();
+                t.equalRange(a[i], eq::add);
+                int n = 0;
+                for (int j = 0; j < a.length; j++)
+                {
+                    boolean removed = j < i && j % 97 == 0;
+                    if (!removed && a[j].compareTo(a[i]) == 0)
+                    {
+                        n = n + 1;
+                    }
+                }
+                assertEquals(n, eq.size());
+                final City gone = a[i];
+                assertTrue(t.removeMatching(gone, c -> c == gone));
+                assertFalse(t.removeMatching(gone, c -> c == gone));
+            }
+            City extra = new City("K1500", -1, -1);
+            t.insert(extra);
+            java.util.List<City> eq = new java.util.ArrayList<>();
+            t.equalRange(extra, eq::add);
+            assertSame(extra, eq.get(0));
+        }
+    }
+
+    /**
+     * Plain mode puts no equal key in a right subtree, even for one long
+     * run, and does not recurse on it.
+     */
+    public void testBuildFromSortedRuns()
+    {
+        City[] same = new City[20000];
+        for (int i = 0; i < same.length; i++)
+        {
+            same[i] = new City("Same", i, 0);
+        }
+        BST<City> t = new BST<>();
+        t.buildFromSorted(same);
+        assertEquals(20000, t.rank(new City("Zed", 0, 0)));
+        java.util.List<String> lines = new java.util.ArrayList<>();
+        t.inorderWithLevels((lvl, c) -> lines.add(lvl + " " + c.getX()));
+        assertEquals("19999 0", lines.get(0));
+        assertEquals("0 19999", lines.get(19999));
+        City[] ab = {new City("A", 1, 1), new City("B", 2, 2),
+            new City("B", 3, 3), new City("B", 4, 4), new City("C", 5, 5)};
+        t.buildFromSorted(ab);
+        lines.clear();
+        t.inorderWithLevels((lvl, c) -> lines.add(lvl + " " + c));
+        assertEquals(java.util.Arrays.asList("3 A (1, 1)", "2 B (2, 2)",
+            "1 B (3, 3)", "0 B (4, 4)", "1 C (5, 5)"), lines);
+        t.buildFromSorted(new City[0]);
+        assertTrue(t.isEmpty());
+        Exception e = null;
+        try
+        {
+            t.buildFromSorted(new City[] {ab[4], ab[0]});
+        }
+        catch (IllegalArgumentException ex)
+        {
+            e = ex;
+        }
+        assertNotNull(e);
+    }
+
+    /**
+     * CHAIN_LEVELS prints what a plain BST prints only while a key's
+     * duplicates arrive before any smaller key lands under it; otherwise
+     * the order still matches but the levels do not.
+     */
+    public void testChainLevelsAgainstPlain()
+    {
+        String[][] agree = { { "B", "B", "D", "B", "A", "C", "E", "E" },
+            { "M", "M", "M", "F", "T", "T", "A", "G", "S", "Z" } };
+        for (String[] names : agree)
+        {
+            BST<City> plain = new BST<>();
+            BST<City> chain = new BST<>(BST.GROUPED | BST.CHAIN_LEVELS);
+            for (int i = 0; i < names.length; i++)
+            {
+                plain.insert(new City(names[i], i, i));
+                chain.insert(new City(names[i], i, i));
+            }
+            assertEquals(inorderToString(plain), inorderToString(chain));
+        }
+
+        BST<City> plain = new BST<>();
+        BST<City> chain = new BST<>(BST.GROUPED | BST.CHAIN_LEVELS);
+        City[] cities = { new City("B", 1, 1), new City("A", 2, 2),
+            new City("B", 3, 3) };
+        for (City c : cities)
+        {
+            plain.insert(c);
+            chain.insert(c);
+        }
+        assertEquals("1  A (2, 2)\n2    B (3, 3)\n0B (1, 1)\n",
+            inorderToString(plain));
+        assertEquals("2    A (2, 2)\n1  B (3, 3)\n0B (1, 1)\n",
+            inorderToString(chain));
+    }
+
+    /**
+     * LevelVisitor and LevelCursor give the same (level, key) sequence as
+     * inorderWithLevels in every mode, from any start, and the visitor
+     * can stop early.
+     */
+    public void testLevelVisitorAndCursor()
+    {
+        int[] modes = { 0, BST.BALANCED, BST.GROUPED,
+            BST.GROUPED | BST.CHAIN_LEVELS };
+        for (int mode : modes)
+        {
+            BST<City> t = new BST<>(mode);
+            java.util.Random r = new java.util.Random(46);
+            for (int i = 0; i < 300; i++)
+            {
+                t.insert(new City("N" + r.nextInt(30), i, i));
+            }
+            java.util.List<String> all = new java.util.ArrayList<>();
+            t.inorderWithLevels((lvl, c) -> all.add(lvl + " " + c));
+            java.util.List<String> seen = new java.util.ArrayList<>();
+            assertTrue(t.inorder((lvl, c) -> seen.add(lvl + " " + c)));
+            assertEquals(all, seen);
+            for (int from = 0; from <= all.size(); from += 7)
+            {
+                LevelCursor<City> cur = t.inorderCursor(from);
+                int i = from;
+                while (cur.advance())
+                {
+                    assertEquals(all.get(i), cur.level() + " " + cur.item());
+                    i = i + 1;
+                }
+                assertEquals(all.size(), i);
+                assertFalse(cur.advance());
+            }
+            int[] calls = new int[1];
+            assertFalse(t.inorder(5, 100, (lvl, c) -> ++calls[0] < 3));
+            assertEquals(3, calls[0]);
+            assertTrue(t.inorder(all.size() - 1, 10, (lvl, c) -> true));
+            assertFalse(t.inorderCursor(-1).advance());
+        }
+    }
+
+    /**
+     * Streams list the inorder keys; every split part knows its exact
+     * size, and a parallel ordered collect matches the sequential one.
+     */
+    public void testStreams()
+    {
+        int[] modes = { 0, BST.BALANCED, BST.GROUPED };
+        for (int mode : modes)
+        {
+            BST<City> t = new BST<>(mode);
+            java.util.Random r = new java.util.Random(47);
+            for (int i = 0; i < 2000; i++)
+            {
+                t.insert(new City("S" + r.nextInt(300), i, i));
+            }
+            java.util.List<City> all = new java.util.ArrayList<>();
+            t.inorderWithLevels((lvl, c) -> all.add(c));
+            assertEquals(all, t.stream()
+                .collect(java.util.stream.Collectors.toList()));
+            assertEquals(all, t.parallelStream()
+                .collect(java.util.stream.Collectors.toList()));
+            assertEquals(all.stream().mapToLong(City::getX).sum(),
+                t.parallelStream().mapToLong(City::getX).sum());
+
+            java.util.Spliterator<City> a = t.spliterator();
+            assertTrue(a.hasCharacteristics(java.util.Spliterator.SUBSIZED));
+            assertEquals(2000, a.getExactSizeIfKnown());
+            assertTrue(a.tryAdvance(c -> assertSame(all.get(0), c)));
+            java.util.Spliterator<City> b = a.trySplit();
+            assertEquals(999, b.getExactSizeIfKnown());
+            assertEquals(1000, a.getExactSizeIfKnown());
+            java.util.List<City> parts = new java.util.ArrayList<>();
+            b.forEachRemaining(parts::add);
+            a.forEachRemaining(parts::add);
+            assertEquals(all.subList(1, 2000), parts);
+            assertNull(a.trySplit());
+        }
+        assertEquals(0, new BST<City>().stream().count());
+    }
 }
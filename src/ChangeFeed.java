@@ -0,0 +1,409 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Change-data-capture feed for a {@link GISDB}. Mutations are copied into a
+ * bounded ring buffer and delivered to subscribers in batches by one
+ * dispatcher thread.
+ *
+ * <p>By default the feed applies backpressure: once subscribers are a
+ * whole ring behind, the next writer waits for them before it takes the
+ * database's write lock, so readers are not held up and subscribers may
+ * read the same GISDB from {@link Subscriber#onChanges}. A writer admitted
+ * this way is never dropped; a mutation with many changes (a delete by
+ * name, a bulk load, a batch) or several writers admitted together may
+ * stretch the ring past its capacity until it drains. Writes made by a
+ * subscriber on the dispatcher thread are not held back.
+ *
+ * <p>In drop mode writers never wait: when subscribers fall a whole ring
+ * behind, further changes are dropped and counted, and the next change
+ * that fits is preceded by a {@link #LOST} event carrying that count. A
+ * subscriber that sees one can start over from {@link #resync()}.
+ *
+ * <p>The feed is attached to the database only while it has subscribers;
+ * with none, GISDB mutations pay nothing for it, and the dispatcher thread
+ * exits once it has delivered what was captured.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class ChangeFeed implements MutationListener {
+
+    /** Event kind: a city was inserted. */
+    public static final int INSERT = 0;
+    /** Event kind: a city was deleted. */
+    public static final int DELETE = 1;
+    /** Event kind: the database was cleared (name is null). */
+    public static final int CLEAR = 2;
+    /**
+     * Event kind, drop mode only: x changes before this one were dropped
+     * (name is null).
+     */
+    public static final int LOST = 3;
+
+    /**
+     * One captured change.
+     */
+    public static final class Event {
+        /** One of INSERT, DELETE, CLEAR, LOST. */
+        public final int kind;
+        /** City name, or {@code null} for CLEAR. */
+        public final String name;
+        /** x coordinate, or for LOST the number of changes dropped. */
+        public final int x;
+        /** y coordinate. */
+        public final int y;
+        /** Feed sequence number, starting at 1. */
+        public final long seq;
+
+        /**
+         * Creates an event.
+         *
+         * @param kind event kind
+         * @param name city name
+         * @param x    x coordinate
+         * @param y    y coordinate
+         * @param seq  sequence number
+         */
+        Event(int kind, String name, int x, int y, long seq) {
+            this.kind = kind;
+            this.name = name;
+            this.x = x;
+            this.y = y;
+            this.seq = seq;
+        }
+    }
+
+    /**
+     * Receives batches of events in sequence order.
+     */
+    interface Subscriber {
+        /**
+         * Called on the dispatcher thread with the next run of events.
+         *
+         * @param batch events in sequence order (non-empty)
+         */
+        void onChanges(List<Event> batch);
+    }
+
+    /**
+     * The database as of a feed sequence number.
+     */
+    public static final class Snapshot {
+        /** Every city, in kd-tree order. */
+        public final List<City> cities;
+        /**
+         * Changes up to this sequence number are already in
+         * {@link #cities}; apply only later events on top.
+         */
+        public final long seq;
+
+        /**
+         * Creates a snapshot.
+         *
+         * @param cities every city
+         * @param seq    sequence number the cities reflect
+         */
+        Snapshot(List<City> cities, long seq) {
+            this.cities = cities;
+            this.seq = seq;
+        }
+    }
+
+    private final GISDB db;
+    private Event[] ring;   // grows past capacity only in blocking mode
+    private final int capacity;
+    private final int maxBatch;
+    private final boolean drop;
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final Object attachLock = new Object();  // taken before db's
+    private boolean attached;
+    private long head;      // next sequence number to publish - 1
+    private long tail;      // last sequence number delivered
+    private long lost;      // changes dropped since the last LOST event
+    private Thread dispatcher;
+
+    /**
+     * Creates a feed over {@code db} that holds writers back when
+     * subscribers fall behind.
+     *
+     * @param db       database to watch
+     * @param capacity ring size in events (at least 1)
+     * @param maxBatch largest batch handed to subscribers (at least 1)
+     */
+    public ChangeFeed(GISDB db, int capacity, int maxBatch) {
+        this(db, capacity, maxBatch, false);
+    }
+
+    /**
+     * Creates a feed over {@code db}.
+     *
+     * @param db       database to watch
+     * @param capacity ring size in events (at least 1)
+     * @param maxBatch largest batch handed to subscribers (at least 1)
+     * @param drop     true to drop changes instead of holding writers
+     *                 back when subscribers fall behind
+     */
+    public ChangeFeed(GISDB db, int capacity, int maxBatch, boolean drop) {
+        if (capacity < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("capacity and batch >= 1");
+        }
+        this.db = db;
+        this.ring = new Event[capacity];
+        this.capacity = capacity;
+        this.maxBatch = maxBatch;
+        this.drop = drop;
+    }
+
+    /**
+     * Adds a subscriber; the first one attaches the feed to the database.
+     * Subscribers see only changes made after they subscribe.
+     *
+     * @param s subscriber to add
+     */
+    public void subscribe(Subscriber s) {
+        synchronized (attachLock) {
+            synchronized (this) {
+                if (subscribers.isEmpty() && dispatcher == null) {
+                    // drop what was captured while nobody subscribed
+                    Arrays.fill(ring, null);
+                    tail = head;
+                    lost = 0;
+                }
+                subscribers.add(s);
+                if (dispatcher == null) {
+                    dispatcher = new Thread(this::run, "change-feed");
+                    dispatcher.setDaemon(true);
+                    dispatcher.start();
+                }
+            }
+            if (!attached) {
+                db.addListener(this);
+                attached = true;
+            }
+        }
+    }
+
+    /**
+     * Removes a subscriber; the last one detaches the feed.
+     *
+     * @param s subscriber to remove
+     * @return true if it was subscribed
+     */
+    public boolean unsubscribe(Subscriber s) {
+        synchronized (attachLock) {
+            boolean detach;
+            synchronized (this) {
+                if (!subscribers.remove(s)) return false;
+                detach = subscribers.isEmpty();
+                notifyAll();
+            }
+            if (detach && attached) {
+                db.removeListener(this);
+                attached = false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Removes every subscriber, detaches the feed and waits for the
+     * dispatcher to deliver what was captured and exit.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void close() throws InterruptedException {
+        Thread t;
+        synchronized (attachLock) {
+            synchronized (this) {
+                subscribers.clear();
+                notifyAll();
+                t = dispatcher;
+            }
+            if (attached) {
+                db.removeListener(this);
+                attached = false;
+            }
+        }
+        if (t != null) {
+            t.join();
+        }
+    }
+
+    /**
+     * Returns whether the dispatcher thread is running.
+     *
+     * @return false once it has exited for lack of subscribers
+     */
+    synchronized boolean isDispatching() {
+        return dispatcher != null;
+    }
+
+    /**
+     * In blocking mode, waits while a whole ring of changes is
+     * undelivered. An interrupt ends the wait and lets the writer through,
+     * with the interrupt status set.
+     */
+    public synchronized void beforeMutation() {
+        if (drop || Thread.currentThread() == dispatcher) return;
+        try {
+            while (head - tail >= capacity) {
+                wait();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void inserted(City c) {
+        publish(INSERT, c.getName(), c.getX(), c.getY());
+    }
+
+    /** {@inheritDoc} */
+    public void deleted(City c) {
+        publish(DELETE, c.getName(), c.getX(), c.getY());
+    }
+
+    /** {@inheritDoc} */
+    public void cleared() {
+        publish(CLEAR, null, 0, 0);
+    }
+
+    // never waits: the caller holds the database's write lock
+    private synchronized void publish(int kind, String name, int x, int y) {
+        if (!drop) {
+            if (head - tail == ring.length) {
+                grow();
+            }
+            add(kind, name, x, y);
+            notifyAll();
+            return;
+        }
+        long free = ring.length - (head - tail);
+        if (free == 0) {
+            lost = lost + 1;
+            return;
+        }
+        if (lost > 0) {
+            if (free == 1) {
+                lost = lost + 1;    // only the LOST event fits
+            }
+            add(LOST, null, (int) Math.min(Integer.MAX_VALUE, lost), 0);
+            lost = 0;
+            if (free == 1) {
+                notifyAll();
+                return;
+            }
+        }
+        add(kind, name, x, y);
+        notifyAll();
+    }
+
+    private void add(int kind, String name, int x, int y) {
+        head = head + 1;
+        ring[(int) (head % ring.length)] = new Event(kind, name, x, y, head);
+    }
+
+    private void grow() {
+        Event[] next = new Event[ring.length * 2];
+        for (long s = tail + 1; s <= head; s++) {
+            next[(int) (s % next.length)] = ring[(int) (s % ring.length)];
+        }
+        ring = next;
+    }
+
+    private void run() {
+        List<Event> batch = new ArrayList<>();
+        try {
+            while (true) {
+                Subscriber[] targets;
+                synchronized (this) {
+                    while (head == tail) {
+                        if (subscribers.isEmpty()) {
+                            dispatcher = null;
+                            return;
+                        }
+                        wait();
+                    }
+                    long end = Math.min(head, tail + maxBatch);
+                    for (long s = tail + 1; s <= end; s++) {
+                        int slot = (int) (s % ring.length);
+                        batch.add(ring[slot]);
+                        ring[slot] = null;
+                    }
+                    targets = subscribers.toArray(new Subscriber[0]);
+                }
+                for (Subscriber t : targets) {
+                    t.onChanges(batch);
+                }
+                synchronized (this) {
+                    tail = tail + batch.size();
+                    if (head == tail && ring.length > capacity) {
+                        ring = new Event[capacity];
+                    }
+                    notifyAll();
+                }
+                batch = new ArrayList<>();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Copies the database together with the feed position it reflects,
+     * under the database's read lock. A subscriber starting over, for
+     * instance after a LOST event, replaces its state with the cities and
+     * then skips events up to {@link Snapshot#seq}.
+     *
+     * @return the snapshot
+     */
+    public Snapshot resync() {
+        return db.query(false, s -> new Snapshot(
+            s.collect(Collectors.toList()), publishedSeq()));
+    }
+
+    /**
+     * Returns how many changes were dropped and not yet reported by a
+     * LOST event.
+     *
+     * @return dropped change count
+     */
+    public synchronized long lostCount() {
+        return lost;
+    }
+
+    /**
+     * Returns the sequence number of the newest captured change.
+     *
+     * @return published sequence number
+     */
+    public synchronized long publishedSeq() {
+        return head;
+    }
+
+    /**
+     * Blocks until every change up to {@code seq} has been delivered.
+     *
+     * @param seq       sequence number to wait for
+     * @param timeoutMs maximum wait in milliseconds
+     * @return true if delivered in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean awaitDelivered(long seq, long timeoutMs)
+        throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (tail < seq) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) return false;
+            wait(left);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,245 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import student.TestCase;
+
+/**
+ * Tests batched change delivery, backpressure, drop mode, resync and
+ * detach behavior.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+public class ChangeFeedTest extends TestCase {
+
+    private GISDB db;
+    private List<ChangeFeed.Event> seen;
+    private ChangeFeed.Subscriber collect;
+
+    /**
+     * Fresh database and a subscriber that records every event.
+     */
+    public void setUp() {
+        db = new GISDB();
+        seen = new ArrayList<>();
+        collect = batch -> {
+            synchronized (seen) {
+                seen.addAll(batch);
+            }
+        };
+    }
+
+    /**
+     * Events arrive in sequence order with names and coordinates.
+     * @throws InterruptedException if interrupted
+     */
+    public void testEventsInOrder() throws InterruptedException {
+        ChangeFeed feed = new ChangeFeed(db, 8, 3);
+        feed.subscribe(collect);
+        db.insert("A", 1, 2);
+        db.insert("B", 3, 4);
+        db.delete(1, 2);
+        db.clear();
+        assertTrue(feed.awaitDelivered(4, 5000));
+        assertEquals(4, seen.size());
+        assertEquals(ChangeFeed.INSERT, seen.get(0).kind);
+        assertEquals("A", seen.get(0).name);
+        assertEquals(2, seen.get(0).y);
+        assertEquals(ChangeFeed.DELETE, seen.get(2).kind);
+        assertEquals(1, seen.get(2).x);
+        assertEquals(ChangeFeed.CLEAR, seen.get(3).kind);
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(i + 1, seen.get(i).seq);
+        }
+    }
+
+    /**
+     * In drop mode a subscriber stuck a whole ring behind does not block
+     * writers, may read the database, learns how many changes it missed
+     * and can start over from a snapshot.
+     * @throws InterruptedException if interrupted
+     */
+    public void testSlowSubscriberLosesEvents() throws InterruptedException {
+        ChangeFeed feed = new ChangeFeed(db, 2, 2, true);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> reads = new ArrayList<>();
+        feed.subscribe(batch -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reads.add(db.info(0, 0));
+            collect.onChanges(batch);
+        });
+        for (int i = 0; i < 200; i++) {
+            assertTrue(db.insert("C" + i, i, i));
+        }
+        assertTrue(feed.lostCount() > 0);
+        release.countDown();
+        assertTrue(feed.awaitDelivered(feed.publishedSeq(), 5000));
+        ChangeFeed.Snapshot snap = feed.resync();
+        assertEquals(200, snap.cities.size());
+        assertEquals(feed.publishedSeq(), snap.seq);
+        assertTrue(db.insert("Last", 500, 500));
+        assertTrue(feed.awaitDelivered(feed.publishedSeq(), 5000));
+        long changes = 0;
+        for (int i = 0; i < seen.size(); i++) {
+            ChangeFeed.Event e = seen.get(i);
+            assertEquals(i + 1, e.seq);
+            changes = changes + (e.kind == ChangeFeed.LOST ? e.x : 1);
+        }
+        assertEquals(201, changes);
+        assertEquals("Last", seen.get(seen.size() - 1).name);
+        assertEquals("C0", reads.get(0));
+        feed.close();
+    }
+
+    /**
+     * By default a subscriber a whole ring behind holds the next writer
+     * back outside the write lock, so readers go on and nothing is lost.
+     * @throws InterruptedException if interrupted
+     */
+    public void testSlowSubscriberHoldsWriters() throws InterruptedException {
+        ChangeFeed feed = new ChangeFeed(db, 2, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        feed.subscribe(batch -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            collect.onChanges(batch);
+        });
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20; i++) {
+                db.insert("C" + i, i, i);
+            }
+        });
+        writer.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writer.getState() != Thread.State.WAITING
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(Thread.State.WAITING, writer.getState());
+        assertEquals(2, feed.publishedSeq());
+        assertEquals("C1", db.info(1, 1));
+        release.countDown();
+        writer.join(5000);
+        assertFalse(writer.isAlive());
+        assertTrue(feed.awaitDelivered(20, 5000));
+        assertEquals(20, seen.size());
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(ChangeFeed.INSERT, seen.get(i).kind);
+            assertEquals(i + 1, seen.get(i).seq);
+        }
+        assertEquals(0, feed.lostCount());
+        feed.close();
+    }
+
+    /**
+     * Changes made by a subscriber, or many at once by a delete by name,
+     * are not held back by a full ring and are all delivered.
+     * @throws InterruptedException if interrupted
+     */
+    public void testBlockingRingStretches() throws InterruptedException {
+        ChangeFeed feed = new ChangeFeed(db, 1, 4);
+        feed.subscribe(batch -> {
+            for (ChangeFeed.Event e : batch) {
+                if (e.kind == ChangeFeed.INSERT && e.name.equals("A")) {
+                    db.insert("B", 2, 2);
+                    db.insert("B", 3, 3);
+                }
+            }
+            collect.onChanges(batch);
+        });
+        db.insert("A", 1, 1);
+        assertTrue(feed.awaitDelivered(3, 5000));
+        db.delete("B");
+        assertTrue(feed.awaitDelivered(5, 5000));
+        assertEquals(5, seen.size());
+        assertEquals(ChangeFeed.DELETE, seen.get(4).kind);
+        ChangeFeed.Snapshot snap = feed.resync();
+        assertEquals(1, snap.cities.size());
+        assertEquals(5, snap.seq);
+        feed.close();
+    }
+
+    /**
+     * The dispatcher exits once the last subscriber leaves, and close()
+     * waits for it.
+     * @throws InterruptedException if interrupted
+     */
+    public void testDispatcherStops() throws InterruptedException {
+        ChangeFeed feed = new ChangeFeed(db, 4, 4);
+        feed.subscribe(collect);
+        assertTrue(feed.isDispatching());
+        db.insert("A", 1, 1);
+        assertTrue(feed.unsubscribe(collect));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (feed.isDispatching() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(feed.isDispatching());
+        feed.subscribe(collect);
+        db.insert("B", 2, 2);
+        assertTrue(feed.awaitDelivered(feed.publishedSeq(), 5000));
+        feed.close();
+        assertFalse(feed.isDispatching());
+        db.insert("C", 3, 3);
+        assertEquals(2, feed.publishedSeq());
+        assertEquals("B", seen.get(seen.size() - 1).name);
+    }
+
+    /**
+     * Racing subscribe and unsubscribe leave the feed attached exactly
+     * when it has subscribers.
+     * @throws InterruptedException if interrupted
+     */
+    public void testAttachRace() throws InterruptedException {
+        ChangeFeed feed = new ChangeFeed(db, 64, 8);
+        ChangeFeed.Subscriber other = batch -> { };
+        Thread t = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                feed.subscribe(other);
+                feed.unsubscribe(other);
+            }
+        });
+        t.start();
+        for (int i = 0; i < 2000; i++) {
+            feed.subscribe(collect);
+            feed.unsubscribe(collect);
+        }
+        t.join();
+        long before = feed.publishedSeq();
+        db.insert("A", 1, 1);
+        assertEquals(before, feed.publishedSeq());
+        feed.subscribe(collect);
+        db.insert("B", 2, 2);
+        assertEquals(before + 1, feed.publishedSeq());
+        assertTrue(db.removeListener(feed));
+        assertFalse(db.removeListener(feed));
+        feed.close();
+    }
+
+    /**
+     * With no subscribers the feed is detached and captures nothing.
+     */
+    public void testDetachedWhenIdle() {
+        ChangeFeed feed = new ChangeFeed(db, 4, 4);
+        db.insert("A", 1, 1);
+        assertEquals(0, feed.publishedSeq());
+        feed.subscribe(collect);
+        db.insert("B", 2, 2);
+        assertEquals(1, feed.publishedSeq());
+        assertTrue(feed.unsubscribe(collect));
+        assertFalse(feed.unsubscribe(collect));
+        db.insert("C", 3, 3);
+        assertEquals(1, feed.publishedSeq());
+    }
+}
@@ -10,6 +10,7 @@ public final class City implements Comparable<City> {
     private final String name;
     private final int x;
     private final int y;
+    private final int nameId;
 
     /**
      * Creates a new City object with the specified name and coordinates
@@ -19,10 +20,24 @@ public final class City implements Comparable<City> {
      * @param y    the y-coordinate of the city
      */
     public City(String name, int x, int y) 
+    {
+        this(name, x, y, -1);
+    }
+
+    /**
+     * Creates a city whose name comes from a {@link NameDictionary}
+     *
+     * @param name   the canonical name for nameId
+     * @param x      the x-coordinate of the city
+     * @param y      the y-coordinate of the city
+     * @param nameId the dictionary id of the name
+     */
+    City(String name, int x, int y, int nameId) 
     {
         this.name = name;
         this.x = x;
         this.y = y;
+        this.nameId = nameId;
     }
 
     /**
@@ -36,6 +51,15 @@ public final class City implements Comparable<City> {
     }
 
 
+    /**
+     * Returns the dictionary id of the name
+     *
+     * @return the id, or -1 when the name is not dictionary-encoded
+     */
+    int getNameId() {
+        return nameId;
+    }
+
     /**
      * Returns the x coordinate
      *
@@ -57,9 +81,35 @@ public final class City implements Comparable<City> {
     /** In BST we order by name only. */
     @Override
     public int compareTo(City other) {
+        if (this.name == other.name) return 0;   // shared canonical name
         return this.name.compareTo(other.name);
     }
 
+    /**
+     * Order-preserving 8-byte prefix of a name: one byte per char for the
+     * first 8 chars, zero padded. A char at or above 255 is clamped to 0xFF
+     * and ends the key, so for any names a &lt; b, prefixKey(a) &lt;=
+     * prefixKey(b) as unsigned longs; equal keys need a full compare.
+     *
+     * @param name the name
+     * @return the prefix key
+     */
+    static long prefixKey(String name) {
+        long k = 0;
+        int n = Math.min(name.length(), 8);
+        int i = 0;
+        while (i < n) {
+            char c = name.charAt(i);
+            i = i + 1;
+            if (c >= 0xFF) {
+                k = (k << 8) | 0xFF;
+                break;
+            }
+            k = (k << 8) | c;
+        }
+        return k << (8 * (8 - i));
+    }
+
     /** Convenience string used by debug/print paths. */
     @Override
     public String toString() {
@@ -72,7 +122,8 @@ public final class City implements Comparable<City> {
         if (this == obj) return true;
         if (!(obj instanceof City)) return false;
         City o = (City)obj;
-        return x == o.x && y == o.y && name.equals(o.name);
+        return x == o.x && y == o.y
+            && (name == o.name || name.equals(o.name));
     }
 
     @Override
@@ -283,4 +283,34 @@ public class CityTest extends TestCase {
         assertFalse(base.equals(diffYName));
         assertFalse(base.equals(diffAll));
     }
+
+    /**
+     * prefixKey never contradicts String order, including chars >= 255.
+     */
+    public void testPrefixKeyPreservesOrder() {
+        java.util.Random rnd = new java.util.Random(38);
+        char[] alphabet = {'\0', 'A', 'a', 'z', '\u00fe', '\u00ff',
+            '\u0100', '\u4e2d'};
+        String[] names = new String[2000];
+        for (int i = 0; i < names.length; i++) {
+            char[] cs = new char[rnd.nextInt(12)];
+            for (int j = 0; j < cs.length; j++) {
+                cs[j] = alphabet[rnd.nextInt(alphabet.length)];
+            }
+            names[i] = new String(cs);
+        }
+        for (int i = 0; i + 1 < names.length; i++) {
+            String a = names[i];
+            String b = names[i + 1];
+            int byKey = Long.compareUnsigned(City.prefixKey(a),
+                City.prefixKey(b));
+            int byName = a.compareTo(b);
+            assertTrue(byKey == 0 || Integer.signum(byKey)
+                == Integer.signum(byName));
+        }
+        assertTrue(Long.compareUnsigned(City.prefixKey("Blacksburg"),
+            City.prefixKey("Richmond")) < 0);
+        assertEquals(City.prefixKey("Abcdefgh1"), City.prefixKey("Abcdefgh2"));
+        assertEquals(0x4100000000000000L, City.prefixKey("A"));
+    }
 }
@@ -0,0 +1,313 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Runs a command script against a {@link GISDB}, one command per line,
+ * tokens separated by spaces or tabs:
+ * <pre>
+ *   insert name x y     true | false
+ *   delete x y          delete(x, y)
+ *   delete name         delete(name)
+ *   info x y            info(x, y)
+ *   info name           info(name)
+ *   search x y radius   search(x, y, radius)
+ *   debug               debug()
+ *   print               print()
+ *   clear               true | false
+ * </pre>
+ * Each result is written followed by a newline unless it already ends with
+ * one, so every command yields at least one line. A name is everything
+ * between the keyword and the numbers, so it may contain spaces. Blank
+ * lines and lines starting with '#' are skipped; any other line that does
+ * not parse yields "Unrecognized command: " and the line.
+ *
+ * Input is read through a {@value #READ_BYTES}-byte buffer and parsed in
+ * place: keywords are compared as bytes and numbers are parsed from bytes,
+ * so only names become Strings, and a name seen recently is reused from a
+ * table keyed by its bytes. Output goes through an {@link OutputEncoder}
+ * that writes in {@value #WRITE_BYTES}-byte chunks; debug and print stream
+ * straight into it.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class CommandProcessor {
+
+    /** Input buffer size; longer lines grow it. */
+    static final int READ_BYTES = 1 << 16;
+    /** Output bytes held before a write. */
+    static final int WRITE_BYTES = 1 << 20;
+    /** The name table is emptied instead of grown past this many slots. */
+    static final int NAME_SLOTS = 1 << 16;
+
+    private static final byte[] INSERT = ascii("insert");
+    private static final byte[] DELETE = ascii("delete");
+    private static final byte[] INFO = ascii("info");
+    private static final byte[] SEARCH = ascii("search");
+    private static final byte[] DEBUG = ascii("debug");
+    private static final byte[] PRINT = ascii("print");
+    private static final byte[] CLEAR = ascii("clear");
+
+    private final GISDB db;
+    private final OutputEncoder out;
+
+    // token bounds of the current line
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int tokens;
+    private int value;                  // last parsed int
+
+    // recently seen names, open addressing on their bytes
+    private byte[][] nameBytes = new byte[1024][];
+    private String[] nameStrings = new String[1024];
+    private int[] nameHashes = new int[1024];
+    private int namesUsed;
+
+    /**
+     * Creates a processor.
+     *
+     * @param db  database the commands run against
+     * @param out receives the results; not closed
+     */
+    CommandProcessor(GISDB db, WritableByteChannel out) {
+        this.db = db;
+        this.out = new OutputEncoder(out, WRITE_BYTES).dictionary(db.names());
+    }
+
+    /**
+     * Runs every command in the input, then flushes the output.
+     *
+     * @param in the script; read to the end, not closed
+     * @return number of commands run (skipped and unrecognized lines are
+     *         not counted)
+     * @throws IOException from either channel
+     */
+    long run(ReadableByteChannel in) throws IOException {
+        byte[] data = new byte[READ_BYTES];
+        ByteBuffer bb = ByteBuffer.wrap(data);
+        int kept = 0;                   // bytes of an unfinished line
+        long commands = 0;
+        while (true) {
+            if (kept == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+                bb = ByteBuffer.wrap(data);
+            }
+            bb.limit(data.length).position(kept);
+            int n = in.read(bb);
+            if (n < 0) break;
+            int end = kept + n;
+            int start = 0;
+            for (int i = kept; i < end; i++) {
+                if (data[i] == '\n') {
+                    commands = commands + line(data, start, i);
+                    start = i + 1;
+                }
+            }
+            kept = end - start;
+            System.arraycopy(data, start, data, 0, kept);
+        }
+        if (kept > 0) {
+            commands = commands + line(data, 0, kept);
+        }
+        out.flush();
+        return commands;
+    }
+
+    /**
+     * Runs one line.
+     *
+     * @param b    buffer
+     * @param from first byte of the line
+     * @param to   end of the line (the newline, or the end of input)
+     * @return 1 when a command ran, else 0
+     * @throws IOException from the output channel
+     */
+    int line(byte[] b, int from, int to) throws IOException {
+        if (to > from && b[to - 1] == '\r') {
+            to = to - 1;
+        }
+        split(b, from, to);
+        if (tokens == 0 || b[starts[0]] == '#') return 0;
+        boolean ran = true;
+        if (is(b, INSERT)) {
+            ran = tokens >= 4 && lastInts(b, 2);
+            if (ran) {
+                int y = value;
+                parse(b, tokens - 2);
+                String name = name(b, starts[1], ends[tokens - 3]);
+                out.ascii(db.insert(name, value, y) ? "true\n" : "false\n");
+            }
+        }
+        else if (is(b, DELETE) || is(b, INFO)) {
+            boolean delete = is(b, DELETE);
+            ran = tokens >= 2;
+            if (tokens == 3 && lastInts(b, 2)) {
+                int y = value;
+                parse(b, 1);
+                result(delete ? db.delete(value, y) : db.info(value, y));
+            }
+            else if (ran) {
+                String name = name(b, starts[1], ends[tokens - 1]);
+                result(delete ? db.delete(name) : db.info(name));
+            }
+        }
+        else if (is(b, SEARCH)) {
+            ran = tokens == 4 && lastInts(b, 3);
+            if (ran) {
+                int r = value;
+                parse(b, 2);
+                int y = value;
+                parse(b, 1);
+                result(db.search(value, y, r));
+            }
+        }
+        else if (is(b, DEBUG) && tokens == 1) {
+            if (db.writeDebug(out, 0, Integer.MAX_VALUE) == 0) {
+                out.ascii('\n');
+            }
+        }
+        else if (is(b, PRINT) && tokens == 1) {
+            if (db.writePrint(out, 0, Integer.MAX_VALUE) == 0) {
+                out.ascii('\n');
+            }
+        }
+        else if (is(b, CLEAR) && tokens == 1) {
+            out.ascii(db.clear() ? "true\n" : "false\n");
+        }
+        else {
+            ran = false;
+        }
+        if (!ran) {
+            out.ascii("Unrecognized command: ")
+               .text(new String(b, from, to - from, StandardCharsets.UTF_8))
+               .ascii('\n');
+        }
+        out.flushIfFull();
+        return ran ? 1 : 0;
+    }
+
+    private void result(String r) {
+        out.text(r);
+        if (r.isEmpty() || r.charAt(r.length() - 1) != '\n') {
+            out.ascii('\n');
+        }
+    }
+
+    // records the bounds of the space/tab separated tokens in b[from, to)
+    private void split(byte[] b, int from, int to) {
+        tokens = 0;
+        int i = from;
+        while (true) {
+            while (i < to && (b[i] == ' ' || b[i] == '\t')) {
+                i = i + 1;
+            }
+            if (i == to) return;
+            if (tokens == starts.length) {
+                starts = Arrays.copyOf(starts, tokens * 2);
+                ends = Arrays.copyOf(ends, tokens * 2);
+            }
+            starts[tokens] = i;
+            while (i < to && b[i] != ' ' && b[i] != '\t') {
+                i = i + 1;
+            }
+            ends[tokens] = i;
+            tokens = tokens + 1;
+        }
+    }
+
+    private boolean is(byte[] b, byte[] keyword) {
+        return Arrays.equals(b, starts[0], ends[0], keyword, 0, keyword.length);
+    }
+
+    // parses the last n tokens as ints, leaving the last one in value
+    private boolean lastInts(byte[] b, int n) {
+        for (int t = tokens - n; t < tokens; t++) {
+            if (!parse(b, t)) return false;
+        }
+        return true;
+    }
+
+    // parses token t as an int into value
+    private boolean parse(byte[] b, int t) {
+        int i = starts[t];
+        int end = ends[t];
+        boolean negative = b[i] == '-';
+        if (negative) {
+            i = i + 1;
+        }
+        if (i == end || end - i > 10) return false;
+        long v = 0;
+        for (; i < end; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) return false;
+            v = v * 10 + d;
+        }
+        v = negative ? -v : v;
+        if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) return false;
+        value = (int) v;
+        return true;
+    }
+
+    // the String for b[from, to), reused when those bytes were seen lately
+    private String name(byte[] b, int from, int to) {
+        int h = 0x811c9dc5;
+        for (int i = from; i < to; i++) {
+            h = (h ^ b[i]) * 0x01000193;
+        }
+        int mask = nameBytes.length - 1;
+        int i = h & mask;
+        while (nameBytes[i] != null) {
+            if (nameHashes[i] == h && Arrays.equals(nameBytes[i], 0,
+                nameBytes[i].length, b, from, to)) {
+                return nameStrings[i];
+            }
+            i = (i + 1) & mask;
+        }
+        if ((namesUsed + 1) * 4 > nameBytes.length * 3) {
+            growNames();
+            return name(b, from, to);
+        }
+        String s = new String(b, from, to - from, StandardCharsets.UTF_8);
+        nameBytes[i] = Arrays.copyOfRange(b, from, to);
+        nameStrings[i] = s;
+        nameHashes[i] = h;
+        namesUsed = namesUsed + 1;
+        return s;
+    }
+
+    // doubles the name table, or empties it once it is at NAME_SLOTS
+    private void growNames() {
+        if (nameBytes.length >= NAME_SLOTS) {
+            Arrays.fill(nameBytes, null);
+            Arrays.fill(nameStrings, null);
+            namesUsed = 0;
+            return;
+        }
+        byte[][] oldBytes = nameBytes;
+        String[] oldStrings = nameStrings;
+        int[] oldHashes = nameHashes;
+        int cap = oldBytes.length * 2;
+        nameBytes = new byte[cap][];
+        nameStrings = new String[cap];
+        nameHashes = new int[cap];
+        for (int k = 0; k < oldBytes.length; k++) {
+            if (oldBytes[k] == null) continue;
+            int i = oldHashes[k] & (cap - 1);
+            while (nameBytes[i] != null) {
+                i = (i + 1) & (cap - 1);
+            }
+            nameBytes[i] = oldBytes[k];
+            nameStrings[i] = oldStrings[k];
+            nameHashes[i] = oldHashes[k];
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
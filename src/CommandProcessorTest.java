@@ -0,0 +1,139 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import student.TestCase;
+
+/**
+ * Tests the command-script processor against direct GISDB calls.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+public class CommandProcessorTest extends TestCase {
+
+    /**
+     * Runs a script and returns what it wrote.
+     *
+     * @param script the commands
+     * @return the output
+     * @throws Exception on failure
+     */
+    private static String run(String script) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CommandProcessor p = new CommandProcessor(new GISDB(),
+            Channels.newChannel(bytes));
+        p.run(Channels.newChannel(new ByteArrayInputStream(
+            script.getBytes(StandardCharsets.UTF_8))));
+        return bytes.toString("UTF-8");
+    }
+
+    /**
+     * Each command prints what the matching GISDB call returns, one
+     * newline-terminated block per command.
+     *
+     * @throws Exception on failure
+     */
+    public void testCommandsMatchApi() throws Exception {
+        String script = "insert Blacksburg 10 20\n"
+            + "insert Roanoke 5 5\r\n"
+            + "\n"
+            + "# a comment\n"
+            + "insert  New York\t100 200\n"
+            + "insert Zürich 7 8\n"
+            + "insert Roanoke 10 20\n"
+            + "info 10 20\n"
+            + "info 1 1\n"
+            + "info Roanoke\n"
+            + "info New York\n"
+            + "search 10 20 10\n"
+            + "debug\n"
+            + "print\n"
+            + "delete 5 5\n"
+            + "delete Zürich\n"
+            + "delete Nowhere\n"
+            + "fly 1 2\n"
+            + "insert Short 1\n"
+            + "clear\n"
+            + "print\n"
+            + "insert Last 1 1";
+        GISDB db = new GISDB();
+        StringBuilder expect = new StringBuilder();
+        expect.append(db.insert("Blacksburg", 10, 20)).append('\n');
+        expect.append(db.insert("Roanoke", 5, 5)).append('\n');
+        expect.append(db.insert("New York", 100, 200)).append('\n');
+        expect.append(db.insert("Zürich", 7, 8)).append('\n');
+        expect.append(db.insert("Roanoke", 10, 20)).append('\n');
+        expect.append(db.info(10, 20)).append('\n');
+        expect.append(db.info(1, 1)).append('\n');
+        expect.append(db.info("Roanoke"));
+        expect.append(db.info("New York"));
+        expect.append(db.search(10, 20, 10)).append('\n');
+        expect.append(db.debug());
+        expect.append(db.print());
+        expect.append(db.delete(5, 5)).append('\n');
+        expect.append(db.delete("Zürich"));
+        expect.append(db.delete("Nowhere")).append('\n');
+        expect.append("Unrecognized command: fly 1 2\n");
+        expect.append("Unrecognized command: insert Short 1\n");
+        expect.append(db.clear()).append('\n');
+        expect.append('\n');
+        expect.append(db.insert("Last", 1, 1)).append('\n');
+        assertEquals(expect.toString(), run(script));
+    }
+
+    /**
+     * Lines that straddle read buffers, and lines longer than the buffer,
+     * are parsed whole; repeated names come back as equal Strings.
+     *
+     * @throws Exception on failure
+     */
+    public void testLongInput() throws Exception {
+        StringBuilder script = new StringBuilder();
+        StringBuilder expect = new StringBuilder();
+        GISDB db = new GISDB();
+        for (int i = 0; i < 20000; i++) {
+            String name = "City" + (i % 700);
+            script.append("insert ").append(name).append(' ')
+                .append(i % 30000).append(' ').append(i / 30).append('\n');
+            expect.append(db.insert(name, i % 30000, i / 30)).append('\n');
+        }
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < CommandProcessor.READ_BYTES + 100; i++) {
+            longName.append((char) ('a' + i % 26));
+        }
+        script.append("insert ").append(longName).append(" 31000 31000\n");
+        expect.append(db.insert(longName.toString(), 31000, 31000))
+            .append('\n');
+        script.append("info 31000 31000\nprint\n");
+        expect.append(db.info(31000, 31000)).append('\n');
+        expect.append(db.print());
+        assertEquals(expect.toString(), run(script.toString()));
+    }
+
+    /**
+     * main runs a script file into an output file, and does nothing
+     * without arguments.
+     *
+     * @throws Exception on failure
+     */
+    public void testMainWithFiles() throws Exception {
+        GISProj.main(new String[0]);
+        Path in = Files.createTempFile("gis", ".txt");
+        Path out = Files.createTempFile("gis", ".out");
+        try {
+            Files.write(in, "insert A 1 2\ninfo A\n"
+                .getBytes(StandardCharsets.UTF_8));
+            GISProj.main(new String[] { in.toString(), out.toString() });
+            assertEquals("true\nA (1, 2)\n", new String(
+                Files.readAllBytes(out), StandardCharsets.UTF_8));
+        }
+        finally {
+            Files.delete(in);
+            Files.delete(out);
+        }
+    }
+}
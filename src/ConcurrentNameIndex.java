@@ -0,0 +1,153 @@
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free name index for many concurrent writers, on a
+ * {@link ConcurrentSkipListSet}. Cities are ordered by name, then x, then
+ * y, so equal names are kept side by side and an exact (name, x, y) triple
+ * is removed in O(log n) without scanning its duplicates. Unlike
+ * {@link BST}, equal names therefore come out in (x, y) order rather than
+ * newest first.
+ *
+ * Iteration is weakly consistent: it never fails or blocks, sees every
+ * city present for its whole duration, and may or may not see cities
+ * added or removed while it runs.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class ConcurrentNameIndex {
+
+    private static final Comparator<City> ORDER = (a, b) -> {
+        int c = a.getName().compareTo(b.getName());
+        if (c != 0) return c;
+        c = Integer.compare(a.getX(), b.getX());
+        return (c != 0) ? c : Integer.compare(a.getY(), b.getY());
+    };
+
+    private final ConcurrentSkipListSet<City> set =
+        new ConcurrentSkipListSet<>(ORDER);
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * Adds a city.
+     *
+     * @param c the city
+     * @return false when the same (name, x, y) is already present
+     */
+    public boolean add(City c) {
+        boolean added = set.add(c);
+        if (added) size.increment();
+        return added;
+    }
+
+    /**
+     * Removes the city with exactly this name and position.
+     *
+     * @param name city name
+     * @param x    x coordinate
+     * @param y    y coordinate
+     * @return true if it was present
+     */
+    public boolean remove(String name, int x, int y) {
+        boolean removed = set.remove(new City(name, x, y));
+        if (removed) size.decrement();
+        return removed;
+    }
+
+    /**
+     * Tests for an exact (name, x, y) triple.
+     *
+     * @param name city name
+     * @param x    x coordinate
+     * @param y    y coordinate
+     * @return true if present
+     */
+    public boolean contains(String name, int x, int y) {
+        return set.contains(new City(name, x, y));
+    }
+
+    /**
+     * Returns the number of cities; exact when no writer is running.
+     *
+     * @return city count
+     */
+    public int size() {
+        return size.intValue();
+    }
+
+    /** Removes every city. */
+    public void clear() {
+        for (City c; (c = set.pollFirst()) != null; ) {
+            size.decrement();
+        }
+    }
+
+    /**
+     * Visits every city in order (weakly consistent).
+     *
+     * @param visit receives each city
+     */
+    public void forEach(Consumer<? super City> visit) {
+        set.forEach(visit);
+    }
+
+    /**
+     * Visits the cities with one name, in (x, y) order.
+     *
+     * @param name  the name
+     * @param visit receives each city
+     */
+    public void forName(String name, Consumer<? super City> visit) {
+        range(name, name + '\0', Integer.MAX_VALUE, visit);
+    }
+
+    /**
+     * Visits up to limit cities whose name starts with prefix, in order.
+     *
+     * @param prefix name prefix ("" matches everything)
+     * @param limit  maximum number of cities
+     * @param visit  receives each city
+     * @return number of cities visited
+     */
+    public int prefix(String prefix, int limit, Consumer<? super City> visit) {
+        return range(prefix, GISDB.prefixEnd(prefix), limit, visit);
+    }
+
+    /**
+     * Visits up to limit cities with lo <= name < hi, in order. A null
+     * bound is open.
+     *
+     * @param lo    inclusive lower bound or null
+     * @param hi    exclusive upper bound or null
+     * @param limit maximum number of cities
+     * @param visit receives each city
+     * @return number of cities visited
+     */
+    public int range(String lo, String hi, int limit,
+                     Consumer<? super City> visit) {
+        NavigableSet<City> view = set;
+        if (lo != null) {
+            view = view.tailSet(lowest(lo), true);
+        }
+        if (hi != null) {
+            view = view.headSet(lowest(hi), false);
+        }
+        int seen = 0;
+        for (City c : view) {
+            if (seen == limit) break;
+            visit.accept(c);
+            seen = seen + 1;
+        }
+        return seen;
+    }
+
+    /** A probe that sorts before every real city with this name. */
+    private static City lowest(String name) {
+        return new City(name, Integer.MIN_VALUE, Integer.MIN_VALUE);
+    }
+}
@@ -0,0 +1,116 @@
+import student.TestCase;
+
+/**
+ * Tests the concurrent skip-list name index.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+public class ConcurrentNameIndexTest extends TestCase {
+
+    /**
+     * Duplicates, exact removal, ordered scans.
+     */
+    public void testOrderAndExactRemoval() {
+        ConcurrentNameIndex idx = new ConcurrentNameIndex();
+        assertTrue(idx.add(new City("B", 5, 5)));
+        assertTrue(idx.add(new City("B", 1, 9)));
+        assertTrue(idx.add(new City("A", 3, 3)));
+        assertTrue(idx.add(new City("Ba", 0, 0)));
+        assertFalse(idx.add(new City("B", 1, 9)));
+        assertEquals(4, idx.size());
+        StringBuilder sb = new StringBuilder();
+        idx.forEach(c -> sb.append(c).append(";"));
+        assertEquals("A (3, 3);B (1, 9);B (5, 5);Ba (0, 0);", sb.toString());
+        sb.setLength(0);
+        idx.forName("B", c -> sb.append(c).append(";"));
+        assertEquals("B (1, 9);B (5, 5);", sb.toString());
+        sb.setLength(0);
+        assertEquals(2, idx.prefix("B", 2, c -> sb.append(c).append(";")));
+        assertEquals("B (1, 9);B (5, 5);", sb.toString());
+        assertEquals(3, idx.prefix("B", 10, c -> { }));
+        assertEquals(4, idx.range(null, null, 10, c -> { }));
+        assertFalse(idx.remove("B", 5, 9));
+        assertTrue(idx.remove("B", 5, 5));
+        assertFalse(idx.contains("B", 5, 5));
+        assertTrue(idx.contains("B", 1, 9));
+        idx.clear();
+        assertEquals(0, idx.size());
+        assertEquals(0, idx.prefix("", 10, c -> { }));
+    }
+
+    /**
+     * Concurrent writers end in the state a sequential run would.
+     *
+     * @throws Exception if a worker fails
+     */
+    public void testConcurrentWriters() throws Exception {
+        ConcurrentNameIndex idx = new ConcurrentNameIndex();
+        int threads = 8;
+        int per = 5000;
+        Thread[] ts = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            ts[t] = new Thread(() -> {
+                for (int i = 0; i < per; i++) {
+                    idx.add(new City("N" + (i % 97), id, i));
+                    if (i % 2 == 1) {
+                        assertTrue(idx.remove("N" + ((i - 1) % 97), id,
+                            i - 1));
+                    }
+                }
+            });
+            ts[t].start();
+        }
+        // a concurrent scan must stay ordered
+        City[] prev = new City[1];
+        idx.forEach(c -> {
+            assertTrue(prev[0] == null || prev[0].compareTo(c) <= 0);
+            prev[0] = c;
+        });
+        for (Thread t : ts) {
+            t.join();
+        }
+        assertEquals(threads * per / 2, idx.size());
+        int[] n = new int[1];
+        idx.forEach(c -> {
+            assertEquals(1, c.getY() % 2);
+            n[0]++;
+        });
+        assertEquals(threads * per / 2, n[0]);
+    }
+
+    /**
+     * A prefix scan running beside writers sees every city that stays
+     * present throughout, in order, and nothing outside the prefix.
+     *
+     * @throws Exception if a worker fails
+     */
+    public void testPrefixScanDuringWrites() throws Exception {
+        ConcurrentNameIndex idx = new ConcurrentNameIndex();
+        for (int i = 0; i < 1000; i++) {
+            idx.add(new City("Keep" + (i % 10), i, 0));
+        }
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) {
+                idx.add(new City("Kx" + (i % 50), i, 1));
+                idx.remove("Kx" + (i % 50), i, 1);
+            }
+        });
+        writer.start();
+        for (int round = 0; round < 20; round++) {
+            int[] kept = new int[1];
+            City[] prev = new City[1];
+            idx.prefix("Keep", Integer.MAX_VALUE, c -> {
+                assertTrue(c.getName().startsWith("Keep"));
+                assertTrue(prev[0] == null || prev[0].compareTo(c) <= 0);
+                prev[0] = c;
+                kept[0]++;
+            });
+            assertEquals(1000, kept[0]);
+        }
+        writer.join();
+        assertEquals(1000, idx.size());
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counting Bloom filter over strings with 4-bit counters, so entries can be
+ * removed as well as added. Counters stick at 15 once saturated, which can
+ * only cost extra false positives, never a false negative. Sized from the
+ * expected number of entries and the target false-positive rate.
+ *
+ * Probes take no lock: GISDB adds and removes under its write lock and
+ * probes under its read lock, so probes never race a change. The
+ * statistics are LongAdders, so concurrent probes do not contend on them.
+ * Double hashing takes its two hashes from String.hashCode and from an
+ * FNV-1a pass over the chars, so names with equal hashCodes still get
+ * different counters.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class CountingBloomFilter {
+
+    private static final int MAX = 15;
+
+    private final long[] counters;      // 16 four-bit counters per long
+    private final int m;
+    private final int k;
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * Creates a filter.
+     *
+     * @param expected expected number of distinct entries (at least 1)
+     * @param fpp      target false-positive rate, 0 &lt; fpp &lt; 1
+     */
+    public CountingBloomFilter(int expected, double fpp) {
+        if (expected < 1 || !(fpp > 0 && fpp < 1)) {
+            throw new IllegalArgumentException("bad filter size");
+        }
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-expected * Math.log(fpp) / (ln2 * ln2));
+        this.m = (int) Math.max(64, Math.min(bits, 1L << 30));
+        this.k = Math.max(1, (int) Math.round((double) m / expected * ln2));
+        this.counters = new long[(m + 15) >>> 4];
+    }
+
+    /**
+     * Returns the number of counters.
+     *
+     * @return counter count
+     */
+    public int counters() {
+        return m;
+    }
+
+    /**
+     * Returns the number of hash functions.
+     *
+     * @return hash count
+     */
+    public int hashes() {
+        return k;
+    }
+
+    /**
+     * Adds one occurrence of {@code s}.
+     *
+     * @param s entry
+     */
+    public void add(String s) {
+        int h1 = hash1(s);
+        int h2 = hash2(s);
+        for (int i = 0; i < k; i++) {
+            int c = Math.floorMod(h1 + i * h2, m);
+            int v = get(c);
+            if (v < MAX) set(c, v + 1);
+        }
+    }
+
+    /**
+     * Removes one occurrence of {@code s}; must follow a matching add.
+     *
+     * @param s entry
+     */
+    public void remove(String s) {
+        int h1 = hash1(s);
+        int h2 = hash2(s);
+        for (int i = 0; i < k; i++) {
+            int c = Math.floorMod(h1 + i * h2, m);
+            int v = get(c);
+            if (v > 0 && v < MAX) set(c, v - 1);
+        }
+    }
+
+    /**
+     * Tests membership and updates the statistics.
+     *
+     * @param s entry
+     * @return false only if {@code s} was definitely never added
+     */
+    public boolean mightContain(String s) {
+        queries.increment();
+        int h1 = hash1(s);
+        int h2 = hash2(s);
+        for (int i = 0; i < k; i++) {
+            if (get(Math.floorMod(h1 + i * h2, m)) == 0) {
+                rejected.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records that a lookup the filter let through found nothing.
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * Returns the number of membership tests.
+     *
+     * @return query count
+     */
+    public long queries() {
+        return queries.sum();
+    }
+
+    /**
+     * Returns how many tests were definite misses.
+     *
+     * @return rejected count
+     */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns how many tests passed but the lookup found nothing.
+     *
+     * @return false-positive count
+     */
+    public long falsePositives() {
+        return falsePositives.sum();
+    }
+
+    /** Removes every entry; statistics are kept. */
+    public void clear() {
+        Arrays.fill(counters, 0L);
+    }
+
+    /** Resets the statistics. */
+    public void resetStats() {
+        queries.reset();
+        rejected.reset();
+        falsePositives.reset();
+    }
+
+    private int get(int c) {
+        return (int) (counters[c >>> 4] >>> ((c & 15) << 2)) & 0xF;
+    }
+
+    private void set(int c, int v) {
+        int shift = (c & 15) << 2;
+        long w = counters[c >>> 4] & ~(0xFL << shift);
+        counters[c >>> 4] = w | ((long) v << shift);
+    }
+
+    /** First double-hashing hash: a mix of String.hashCode. */
+    private static int hash1(String s) {
+        return (int) mix(s.hashCode() * 0x9E3779B97F4A7C15L + s.length());
+    }
+
+    /** Second, independent hash: FNV-1a over the chars; always odd. */
+    private static int hash2(String s) {
+        long z = 0xCBF29CE484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            z = (z ^ s.charAt(i)) * 0x100000001B3L;
+        }
+        return (int) (mix(z) >>> 32) | 1;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,175 @@
+import student.TestCase;
+
+/**
+ * Tests the counting Bloom filter and its use in front of GISDB lookups.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+public class CountingBloomFilterTest extends TestCase {
+
+    /**
+     * No false negatives, removals take effect, and the measured
+     * false-positive rate is near the target.
+     */
+    public void testAddRemoveAndRate() {
+        CountingBloomFilter f = new CountingBloomFilter(10000, 0.01);
+        assertTrue(f.hashes() >= 1);
+        assertTrue(f.counters() >= 64);
+        for (int i = 0; i < 10000; i++) {
+            f.add("name" + i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(f.mightContain("name" + i));
+        }
+        int fp = 0;
+        for (int i = 0; i < 20000; i++) {
+            if (f.mightContain("other" + i)) {
+                fp++;
+            }
+        }
+        assertTrue("fp=" + fp, fp < 600);
+        for (int i = 0; i < 10000; i++) {
+            f.remove("name" + i);
+        }
+        int left = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (f.mightContain("name" + i)) {
+                left++;
+            }
+        }
+        assertTrue("left=" + left, left < 100);
+        assertEquals(40000, f.queries());
+        f.resetStats();
+        assertEquals(0, f.queries());
+    }
+
+    /**
+     * Bad sizes are rejected.
+     */
+    public void testBadArguments() {
+        Exception e = null;
+        try {
+            new CountingBloomFilter(0, 0.1);
+        }
+        catch (IllegalArgumentException ex) {
+            e = ex;
+        }
+        assertNotNull(e);
+        e = null;
+        try {
+            new CountingBloomFilter(10, 1.0);
+        }
+        catch (IllegalArgumentException ex) {
+            e = ex;
+        }
+        assertNotNull(e);
+    }
+
+    /**
+     * GISDB answers misses from the filter and tracks statistics; the
+     * filter follows inserts, deletes and clear.
+     */
+    public void testGisdbFront() {
+        GISDB db = new GISDB();
+        db.insert("Present", 1, 1);
+        db.enableNameFilter(1000, 0.001);
+        CountingBloomFilter f = db.nameFilter();
+        assertEquals("Present (1, 1)\n", db.info("Present"));
+        assertEquals("", db.info("Typo"));
+        assertEquals("", db.delete("Typo"));
+        assertEquals(3, f.queries());
+        assertTrue(f.rejected() + f.falsePositives() == 2);
+        db.insert("Later", 2, 2);
+        assertEquals("Later (2, 2)\n", db.info("Later"));
+        db.delete(2, 2);
+        assertEquals("", db.info("Later"));
+        db.clear();
+        assertEquals("", db.info("Present"));
+        db.insert("Present", 3, 3);
+        assertEquals("Present (3, 3)\n", db.info("Present"));
+    }
+
+    /**
+     * A filter enabled on frozen names is seeded with them.
+     */
+    public void testFilterAfterFreeze() {
+        GISDB db = new GISDB();
+        db.insert("A", 1, 1);
+        db.insert("A", 2, 2);
+        db.insert("B", 3, 3);
+        db.freezeNames();
+        db.enableNameFilter(100, 0.01);
+        assertEquals("A (1, 1)\nA (2, 2)\n", db.info("A"));
+        assertEquals("B (3, 3)\n", db.info("B"));
+        assertEquals("", db.info("Z"));
+    }
+
+    /**
+     * A lazy database sent back to pending by clear() still finds names
+     * inserted afterwards, though the filter only learns them when the
+     * name side is built.
+     */
+    public void testLazyAfterClear() {
+        GISDB db = new GISDB(GISDB.LAZY_NAMES);
+        db.enableNameFilter(100, 0.01);
+        db.clear();
+        db.insert("B", 2, 2);
+        assertEquals("B (2, 2)\n", db.delete("B"));
+        assertEquals("", db.info(2, 2));
+        db.clear();
+        db.insert("C", 3, 3);
+        assertEquals("C (3, 3)\n", db.info("C"));
+        assertEquals("", db.info("D"));
+    }
+
+    /**
+     * Names with equal String.hashCode land on different counters, so
+     * adding one does not make the others look present.
+     */
+    public void testEqualHashCodes() {
+        String[] same = { "AaAa", "AaBB", "BBAa", "BBBB" };
+        for (String t : same) {
+            assertEquals(same[0].hashCode(), t.hashCode());
+        }
+        CountingBloomFilter f = new CountingBloomFilter(100, 0.01);
+        f.add(same[0]);
+        assertTrue(f.mightContain(same[0]));
+        for (int i = 1; i < same.length; i++) {
+            assertFalse(same[i], f.mightContain(same[i]));
+        }
+    }
+
+    /**
+     * Concurrent probes lose no statistics.
+     *
+     * @throws InterruptedException if interrupted
+     */
+    public void testConcurrentStats() throws InterruptedException {
+        CountingBloomFilter f = new CountingBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            f.add("n" + i);
+        }
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    if (f.mightContain("n" + (i % 1000))) {
+                        f.recordFalsePositive();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        long queries = f.queries();
+        long fps = f.falsePositives();
+        long rejected = f.rejected();
+        assertEquals(20000L, queries);
+        assertEquals(20000L, fps);
+        assertEquals(0L, rejected);
+    }
+}
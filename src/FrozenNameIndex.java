@@ -0,0 +1,381 @@
+import java.util.Arrays;
+
+/**
+ * Immutable name index for read-only data. Distinct names are kept sorted
+ * and front-coded in blocks of {@value #BLOCK}: each block starts with a
+ * full head name and every later name stores only the length of the prefix
+ * it shares with the previous name plus its own suffix. Lookups binary
+ * search the block heads and decode at most one block.
+ *
+ * Beside the names sit the rows, one per city, in BST print order: a
+ * packed coordinate ({@link NameMultimap#pack}) and the BST level the row
+ * was printed at, so listings match the tree it was frozen from.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class FrozenNameIndex {
+
+    /** Names per front-coded block. */
+    static final int BLOCK = 16;
+
+    /** Receives rows in print order. */
+    interface RowVisitor {
+        /**
+         * Visits one row.
+         *
+         * @param level  BST level of the row
+         * @param name   city name
+         * @param packed packed coordinates
+         */
+        void visit(int level, String name, int packed);
+    }
+
+    private final char[] pool;          // front-coded names
+    private final int[] blockStart;     // pool offset of each block head
+    private final int[] firstRow;       // name i owns rows firstRow[i]..[i+1]-1
+    private final int[] coords;
+    private final int[] levels;
+    private final int names;
+
+    private FrozenNameIndex(char[] pool, int[] blockStart, int[] firstRow,
+                            int[] coords, int[] levels, int names) {
+        this.pool = pool;
+        this.blockStart = blockStart;
+        this.firstRow = firstRow;
+        this.coords = coords;
+        this.levels = levels;
+        this.names = names;
+    }
+
+    /**
+     * Collects rows in print order (names non-decreasing) and builds the
+     * index.
+     */
+    static final class Builder {
+        private char[] pool = new char[256];
+        private int poolLen;
+        private int[] blockStart = new int[16];
+        private int[] firstRow = new int[16];
+        private int[] coords = new int[16];
+        private int[] levels = new int[16];
+        private int names;
+        private int rows;
+        private String last;
+
+        /**
+         * Appends a row.
+         *
+         * @param level BST level
+         * @param name  city name, not below the previous one
+         * @param x     x coordinate
+         * @param y     y coordinate
+         * @return this builder
+         */
+        Builder add(int level, String name, int x, int y) {
+            if (last == null || !last.equals(name)) {
+                if (last != null && last.compareTo(name) > 0) {
+                    throw new IllegalArgumentException("names out of order");
+                }
+                if (name.length() > Character.MAX_VALUE) {
+                    throw new IllegalArgumentException("name too long");
+                }
+                addName(name);
+            }
+            if (rows == coords.length) {
+                coords = Arrays.copyOf(coords, rows * 2);
+                levels = Arrays.copyOf(levels, rows * 2);
+            }
+            coords[rows] = NameMultimap.pack(x, y);
+            levels[rows] = level;
+            rows = rows + 1;
+            return this;
+        }
+
+        private void addName(String name) {
+            if (names + 1 >= firstRow.length) {
+                firstRow = Arrays.copyOf(firstRow, firstRow.length * 2);
+            }
+            firstRow[names] = rows;
+            int shared = 0;
+            if (names % BLOCK == 0) {
+                int b = names / BLOCK;
+                if (b == blockStart.length) {
+                    blockStart = Arrays.copyOf(blockStart, b * 2);
+                }
+                blockStart[b] = poolLen;
+            }
+            else {
+                int max = Math.min(last.length(), name.length());
+                while (shared < max
+                    && last.charAt(shared) == name.charAt(shared)) {
+                    shared = shared + 1;
+                }
+                put((char) shared);
+            }
+            int suffix = name.length() - shared;
+            put((char) suffix);
+            if (poolLen + suffix > pool.length) {
+                pool = Arrays.copyOf(pool,
+                    Math.max(pool.length * 2, poolLen + suffix));
+            }
+            name.getChars(shared, name.length(), pool, poolLen);
+            poolLen = poolLen + suffix;
+            names = names + 1;
+            last = name;
+        }
+
+        private void put(char c) {
+            if (poolLen == pool.length) {
+                pool = Arrays.copyOf(pool, pool.length * 2);
+            }
+            pool[poolLen] = c;
+            poolLen = poolLen + 1;
+        }
+
+        /**
+         * Builds the index; arrays are trimmed to size.
+         *
+         * @return the frozen index
+         */
+        FrozenNameIndex build() {
+            int[] starts = Arrays.copyOf(firstRow, names + 1);
+            starts[names] = rows;
+            return new FrozenNameIndex(Arrays.copyOf(pool, poolLen),
+                Arrays.copyOf(blockStart, (names + BLOCK - 1) / BLOCK),
+                starts, Arrays.copyOf(coords, rows),
+                Arrays.copyOf(levels, rows), names);
+        }
+    }
+
+    /** Sequential decoder over the front-coded names. */
+    private final class Cursor {
+        private char[] buf = new char[32];
+        private int len;
+        private int index;      // name currently in buf
+        private int pos;        // pool offset of the next entry
+
+        /** Positions on name i. */
+        void seek(int i) {
+            int b = i / BLOCK;
+            pos = blockStart[b];
+            index = b * BLOCK;
+            len = 0;
+            decode(0);
+            while (index < i) {
+                index = index + 1;
+                decode(pool[pos++]);
+            }
+        }
+
+        /** Advances to the next name; false at the end. */
+        boolean next() {
+            if (index + 1 >= names) return false;
+            index = index + 1;
+            decode((index % BLOCK == 0) ? 0 : pool[pos++]);
+            return true;
+        }
+
+        private void decode(int shared) {
+            int suffix = pool[pos++];
+            len = shared + suffix;
+            if (len > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(len, buf.length * 2));
+            }
+            System.arraycopy(pool, pos, buf, shared, suffix);
+            pos = pos + suffix;
+        }
+
+        /** Compares the current name with s, as String.compareTo. */
+        int compareTo(String s) {
+            int n = Math.min(len, s.length());
+            for (int k = 0; k < n; k++) {
+                int d = buf[k] - s.charAt(k);
+                if (d != 0) return d;
+            }
+            return len - s.length();
+        }
+
+        String string() {
+            return new String(buf, 0, len);
+        }
+    }
+
+    /**
+     * Returns the number of rows (cities).
+     *
+     * @return row count
+     */
+    public int size() {
+        return coords.length;
+    }
+
+    /**
+     * Returns the number of distinct names.
+     *
+     * @return name count
+     */
+    public int names() {
+        return names;
+    }
+
+    /**
+     * Returns the i-th distinct name in sorted order.
+     *
+     * @param i name index
+     * @return the name
+     */
+    public String name(int i) {
+        Cursor c = new Cursor();
+        c.seek(i);
+        return c.string();
+    }
+
+    /**
+     * Returns the index of the first name that is not below key.
+     *
+     * @param key search key
+     * @return name index in 0..names()
+     */
+    public int lowerBound(String key) {
+        Cursor c = new Cursor();
+        // last block whose head is <= key
+        int lo = 0;
+        int hi = blockStart.length - 1;
+        int block = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            c.seek(mid * BLOCK);
+            if (c.compareTo(key) <= 0) {
+                block = mid;
+                lo = mid + 1;
+            }
+            else {
+                hi = mid - 1;
+            }
+        }
+        if (block < 0) return 0;
+        c.seek(block * BLOCK);
+        do {
+            if (c.compareTo(key) >= 0) return c.index;
+        } while (c.next() && c.index % BLOCK != 0);
+        return Math.min((block + 1) * BLOCK, names);
+    }
+
+    /**
+     * Returns the index of a name.
+     *
+     * @param key the name
+     * @return name index, or -1 when absent
+     */
+    public int find(String key) {
+        int i = lowerBound(key);
+        if (i == names) return -1;
+        Cursor c = new Cursor();
+        c.seek(i);
+        return (c.compareTo(key) == 0) ? i : -1;
+    }
+
+    /**
+     * Returns the first row of a name; rows of name i end at
+     * firstRow(i + 1).
+     *
+     * @param i name index in 0..names()
+     * @return row index
+     */
+    public int firstRow(int i) {
+        return firstRow[i];
+    }
+
+    /**
+     * Returns the packed coordinates of a row.
+     *
+     * @param row row index
+     * @return packed coordinates
+     */
+    public int coord(int row) {
+        return coords[row];
+    }
+
+    /**
+     * Visits rows from .. from+count-1 in print order.
+     *
+     * @param from  first row
+     * @param count maximum number of rows
+     * @param v     visitor
+     */
+    public void rows(int from, int count, RowVisitor v) {
+        if (from < 0 || from >= coords.length || count <= 0) return;
+        // name owning row 'from': last i with firstRow[i] <= from
+        int i = Arrays.binarySearch(firstRow, 0, names + 1, from);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        Cursor c = new Cursor();
+        c.seek(i);
+        emit(c, from, from + Math.min(coords.length - from, count), v);
+    }
+
+    /**
+     * Visits rows whose name n satisfies lo <= n < hi, in print order,
+     * stopping after limit rows. A null bound is open.
+     *
+     * @param lo    inclusive lower bound or null
+     * @param hi    exclusive upper bound or null
+     * @param limit maximum number of rows
+     * @param v     visitor
+     * @return number of rows visited
+     */
+    public int range(String lo, String hi, int limit, RowVisitor v) {
+        int i = (lo == null) ? 0 : lowerBound(lo);
+        if (i == names || limit <= 0) return 0;
+        Cursor c = new Cursor();
+        c.seek(i);
+        int seen = 0;
+        do {
+            if (hi != null && c.compareTo(hi) >= 0) break;
+            int from = firstRow[c.index];
+            int take = Math.min(firstRow[c.index + 1] - from, limit - seen);
+            String name = c.string();
+            for (int r = from; r < from + take; r++) {
+                v.visit(levels[r], name, coords[r]);
+            }
+            seen = seen + take;
+        } while (seen < limit && c.next());
+        return seen;
+    }
+
+    private void emit(Cursor c, int from, int to, RowVisitor v) {
+        int r = from;
+        while (r < to) {
+            String name = c.string();
+            int end = Math.min(firstRow[c.index + 1], to);
+            for (; r < end; r++) {
+                v.visit(levels[r], name, coords[r]);
+            }
+            if (!c.next()) break;
+        }
+    }
+
+    /**
+     * Number of rows whose name sorts strictly before key.
+     *
+     * @param key name to rank
+     * @return rank
+     */
+    public int rank(String key) {
+        return firstRow[lowerBound(key)];
+    }
+
+    /**
+     * Approximate heap footprint of the arrays, excluding object headers.
+     *
+     * @return bytes
+     */
+    public long estimatedBytes() {
+        return 2L * pool.length + 4L * blockStart.length
+            + 4L * firstRow.length + 4L * coords.length
+            + 4L * levels.length;
+    }
+}
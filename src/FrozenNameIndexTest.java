@@ -0,0 +1,121 @@
+import student.TestCase;
+
+/**
+ * Tests the front-coded frozen name index.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+public class FrozenNameIndexTest extends TestCase {
+
+    private String[] sorted;
+    private FrozenNameIndex idx;
+
+    /**
+     * Builds an index over names sharing long prefixes, two rows each.
+     */
+    public void setUp() {
+        java.util.TreeSet<String> set = new java.util.TreeSet<>();
+        java.util.Random rnd = new java.util.Random(40);
+        String[] stems = {"San ", "Santa ", "Saint ", "S", "", "é",
+            "中"};
+        while (set.size() < 1000) {
+            set.add(stems[rnd.nextInt(stems.length)] + rnd.nextInt(5000));
+        }
+        sorted = set.toArray(new String[0]);
+        FrozenNameIndex.Builder b = new FrozenNameIndex.Builder();
+        for (int i = 0; i < sorted.length; i++) {
+            b.add(i % 7, sorted[i], i, 1);
+            b.add(i % 5, sorted[i], i, 2);
+        }
+        idx = b.build();
+    }
+
+    /**
+     * Names decode, find and lower-bound like a sorted array.
+     */
+    public void testLookups() {
+        assertEquals(sorted.length, idx.names());
+        assertEquals(2 * sorted.length, idx.size());
+        for (int i = 0; i < sorted.length; i++) {
+            assertEquals(sorted[i], idx.name(i));
+            assertEquals(i, idx.find(sorted[i]));
+            assertEquals(2 * i, idx.firstRow(i));
+            assertEquals(NameMultimap.pack(i, 1), idx.coord(2 * i));
+        }
+        String[] probes = {"", "A", "San", "San 1", "Santa", "Saint 99x",
+            "T", "ÿ", "￿"};
+        for (String p : probes) {
+            int expect = java.util.Arrays.binarySearch(sorted, p);
+            if (expect < 0) {
+                assertEquals(-1, idx.find(p));
+                expect = -expect - 1;
+            }
+            assertEquals(expect, idx.lowerBound(p));
+            assertEquals(2 * expect, idx.rank(p));
+        }
+    }
+
+    /**
+     * Row pages and name ranges come out in order with their levels.
+     */
+    public void testRowsAndRange() {
+        StringBuilder sb = new StringBuilder();
+        idx.rows(5, 4, (lvl, n, p) -> sb.append(lvl).append(n)
+            .append(NameMultimap.unpackY(p)).append(","));
+        assertEquals("2" + sorted[2] + "2,3" + sorted[3] + "1,"
+            + "3" + sorted[3] + "2,4" + sorted[4] + "1,", sb.toString());
+        java.util.List<String> got = new java.util.ArrayList<>();
+        int n = idx.range("San ", "San!", 1000000,
+            (lvl, name, p) -> got.add(name));
+        java.util.List<String> want = new java.util.ArrayList<>();
+        for (String s : sorted) {
+            if (s.startsWith("San ")) {
+                want.add(s);
+                want.add(s);
+            }
+        }
+        assertEquals(want, got);
+        assertEquals(want.size(), n);
+        assertEquals(3, idx.range(null, null, 3, (lvl, name, p) -> { }));
+        assertEquals(0, idx.range("￿", null, 3, (lvl, name, p) -> { }));
+    }
+
+    /**
+     * An unbounded limit never overflows the row arithmetic.
+     */
+    public void testMaxLimit() {
+        int[] seen = new int[1];
+        int from = idx.lowerBound(sorted[10]);
+        assertEquals(idx.size() - idx.firstRow(from),
+            idx.range(sorted[10], null, Integer.MAX_VALUE,
+                (level, name, p) -> seen[0]++));
+        assertEquals(idx.size() - idx.firstRow(from), seen[0]);
+        seen[0] = 0;
+        idx.rows(5, Integer.MAX_VALUE, (level, name, p) -> seen[0]++);
+        assertEquals(idx.size() - 5, seen[0]);
+    }
+
+    /**
+     * Out-of-order input is rejected; an empty index answers sanely.
+     */
+    public void testBuilderEdges() {
+        FrozenNameIndex.Builder b = new FrozenNameIndex.Builder();
+        b.add(0, "B", 1, 1);
+        Exception e = null;
+        try {
+            b.add(0, "A", 1, 1);
+        }
+        catch (IllegalArgumentException ex) {
+            e = ex;
+        }
+        assertNotNull(e);
+        FrozenNameIndex empty = new FrozenNameIndex.Builder().build();
+        assertEquals(0, empty.size());
+        assertEquals(-1, empty.find("A"));
+        assertEquals(0, empty.rank("A"));
+        empty.rows(0, 10, (lvl, name, p) -> fail());
+        assertTrue(idx.estimatedBytes() > 0);
+    }
+}
@@ -1,5 +1,18 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
 /**
- * GIS database that coordinates BST and KDTree  * 
+ * GIS database that coordinates BST and KDTree  *
+ * All public methods are safe to call from several threads: reads share a
+ * lock, mutations (including whole batches) take it exclusively.
+ *
  * @author Parth Mehta (pmehta24)
  * @author Anurag Pokala (anuragp34)
  * @version 2025-10-06
@@ -8,6 +21,14 @@ public class GISDB implements GIS {
 
     private final BST<City> byName;
     private final KDTree byCoord;
+    private final NameMultimap coordsByName = new NameMultimap();
+    private final NameDictionary names = new NameDictionary();
+    private final NameFrequency nameCounts = new NameFrequency();
+    private FrozenNameIndex frozen;     // non-null: read-only until clear()
+    private CountingBloomFilter nameFilter;
+    private TrigramIndex trigrams;
+    private volatile MutationListener[] listeners = new MutationListener[0];
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
     /** The maximum allowable coordinate value. */
     public static final int MAXCOORD = 32767;
@@ -15,22 +36,269 @@ public class GISDB implements GIS {
     /** Number of coordinate dimensions. Kept for parity with spec. */
     public static final int DIMENSION = 2;
 
+    /**
+     * Name option: build the name side (BST, name multimap, name filter)
+     * only when a name-based operation first needs it.
+     */
+    public static final int LAZY_NAMES = 1 << 8;
+
+    // lazy name side: cities in insertion order until the first name query
+    private final boolean lazy;         // LAZY_NAMES; clear() goes back to it
+    private final int nameOptions;
+    private City[] pendingNames;
+    private int pendingCount;
+    private int pendingDeletes;
+    private volatile boolean namesBuilt = true;
+
     /**
      * Creates a new GIS database with empty BST and KDTree.
      */
     public GISDB() {
-        this.byName = new BST<>();
+        this(false);
+    }
+
+    /**
+     * Creates a new GIS database.
+     *
+     * @param balancedNames true to keep the name BST AVL-balanced; print()
+     *                      then shows the balanced shape
+     */
+    public GISDB(boolean balancedNames) {
+        this(balancedNames ? BST.BALANCED : 0);
+    }
+
+    /**
+     * Creates a new GIS database.
+     *
+     * @param nameOptions BST options for the name index (BST.BALANCED,
+     *                    BST.GROUPED, BST.CHAIN_LEVELS), optionally with
+     *                    LAZY_NAMES; print() order is the same for every
+     *                    option, but only without GROUPED do the levels
+     *                    match the original BST's
+     */
+    public GISDB(int nameOptions) {
+        this.byName = new BST<>(nameOptions & ~LAZY_NAMES,
+            c -> City.prefixKey(c.getName()));
+        this.lazy = (nameOptions & LAZY_NAMES) != 0;
+        this.nameOptions = nameOptions;
+        if (lazy) {
+            pendingNames = new City[16];
+            namesBuilt = false;
+        }
         this.byCoord = new KDTree();
     }
 
-    /** 
-     * Reinitialize the database. 
+    /**
+     * Reinitialize the database.
      * @return boolean after method has been run
      * */
     public boolean clear() {
-        byName.clear();
-        byCoord.clear();
-        return true;
+        admit();
+        lock.writeLock().lock();
+        try {
+            byName.clear();
+            byCoord.clear();
+            coordsByName.clear();
+            names.clear();
+            nameCounts.clear();
+            frozen = null;
+            if (lazy) {
+                pendingNames = new City[16];
+                pendingCount = 0;
+                pendingDeletes = 0;
+                namesBuilt = false;
+            }
+            if (trigrams != null) {
+                trigrams.clear();
+            }
+            if (nameFilter != null) {
+                nameFilter.clear();
+            }
+            for (MutationListener l : listeners) {
+                l.cleared();
+            }
+            return true;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registers a listener that is told about every successful mutation.
+     *
+     * @param l listener to add
+     */
+    public void addListener(MutationListener l) {
+        if (l == null) throw new IllegalArgumentException("null listener");
+        lock.writeLock().lock();
+        try {
+            MutationListener[] next =
+                new MutationListener[listeners.length + 1];
+            System.arraycopy(listeners, 0, next, 0, listeners.length);
+            next[listeners.length] = l;
+            listeners = next;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lets listeners hold a writer back before it takes the write lock.
+     */
+    private void admit() {
+        for (MutationListener l : listeners) {
+            l.beforeMutation();
+        }
+    }
+
+    /**
+     * Unregisters a listener added with {@link #addListener}.
+     *
+     * @param l listener to remove
+     * @return true if it was registered
+     */
+    public boolean removeListener(MutationListener l) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < listeners.length; i++) {
+                if (listeners[i] == l) {
+                    MutationListener[] next =
+                        new MutationListener[listeners.length - 1];
+                    System.arraycopy(listeners, 0, next, 0, i);
+                    System.arraycopy(listeners, i + 1, next, i,
+                        listeners.length - i - 1);
+                    listeners = next;
+                    return true;
+                }
+            }
+            return false;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Puts a counting Bloom filter over the distinct names in front of
+     * info(String) and delete(String), so lookups of names that do not
+     * exist return without touching the indexes. Replaces any previous
+     * filter.
+     *
+     * @param expectedNames expected number of distinct names
+     * @param fpp           target false-positive rate, 0 &lt; fpp &lt; 1
+     */
+    public void enableNameFilter(int expectedNames, double fpp) {
+        CountingBloomFilter f = new CountingBloomFilter(expectedNames, fpp);
+        lock.writeLock().lock();
+        try {
+            buildNames();
+            // the dictionary still holds every name once frozen
+            for (int id = 0; id < names.idBound(); id++) {
+                if (names.refs(id) > 0) {
+                    f.add(names.name(id));
+                }
+            }
+            nameFilter = f;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds a trigram index over the distinct names and keeps it up to
+     * date from then on, so {@link #wildcardSearch} and
+     * {@link #similarNames} only look at candidate names instead of all
+     * of them.
+     */
+    public void enableTrigramIndex() {
+        lock.writeLock().lock();
+        try {
+            TrigramIndex t = new TrigramIndex();
+            for (int id = 0; id < names.idBound(); id++) {
+                String name = names.name(id);
+                if (name != null) {
+                    t.add(id, name);
+                }
+            }
+            trigrams = t;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the name BST and name multimap with a compact, front-coded
+     * {@link FrozenNameIndex} built from the current contents. Meant for
+     * read-only data after a bulk load: every mutation is refused (insert
+     * returns false, deletes return "") until {@link #clear()}. Name
+     * queries and print() give the same output as before.
+     *
+     * @return false when already frozen
+     */
+    public boolean freezeNames() {
+        lock.writeLock().lock();
+        try {
+            if (frozen != null) return false;
+            buildNames();
+            FrozenNameIndex.Builder b = new FrozenNameIndex.Builder();
+            byName.inorder((level, c) -> {
+                b.add(level, c.getName(), c.getX(), c.getY());
+                return true;
+            });
+            frozen = b.build();
+            byName.clear();
+            coordsByName.clear();
+            return true;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the name options this database was created with, so a
+     * replica can build its name index the same way.
+     *
+     * @return options passed to {@link #GISDB(int)}
+     */
+    int nameOptions() {
+        return nameOptions;
+    }
+
+    /**
+     * Returns whether the name side is built.
+     *
+     * @return false while a lazy database has not needed it yet
+     */
+    boolean namesBuilt() {
+        return namesBuilt;
+    }
+
+    /**
+     * Returns the frozen name index.
+     *
+     * @return the index, or null when the names are not frozen
+     */
+    FrozenNameIndex frozenNames() {
+        return frozen;
+    }
+
+    /**
+     * Returns the name filter, for its hit/miss statistics.
+     *
+     * @return the filter, or null when not enabled
+     */
+    CountingBloomFilter nameFilter() {
+        return nameFilter;
+    }
+
+    /** Caller holds the lock. */
+    private boolean definitelyAbsent(String name) {
+        return nameFilter != null && !nameFilter.mightContain(name);
     }
 
     /**
@@ -38,14 +306,274 @@ public class GISDB implements GIS {
      * @return true after method has been completed
      */
     public boolean insert(String name, int x, int y) {
-        if (name == null || x < 0 || y < 0 || x > MAXCOORD || y > MAXCOORD) {
+        if (name == null || !inBounds(x, y)) {
             return false;
         }
-        boolean added = byCoord.insert(name, x, y);
-        if (added) {
-            byName.insert(new City(name, x, y));
+        admit();
+        lock.writeLock().lock();
+        try {
+            if (frozen != null) return false;
+            return insertCity(name, x, y);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean inBounds(int x, int y) {
+        return x >= 0 && y >= 0 && x <= MAXCOORD && y <= MAXCOORD;
+    }
+
+    /**
+     * Adds to both indexes, which share one City carrying the canonical
+     * name; caller holds the write lock.
+     */
+    private boolean insertCity(String name, int x, int y) {
+        City c = indexCity(name, x, y);
+        if (c == null) return false;
+        if (namesBuilt) {
+            byName.insert(c);
+        }
+        for (MutationListener l : listeners) {
+            l.inserted(c);
         }
-        return added;
+        return true;
+    }
+
+    /**
+     * Adds a city to everything but the name BST; caller holds the write
+     * lock.
+     *
+     * @return the shared City, or null when the spot is taken
+     */
+    private City indexCity(String name, int x, int y) {
+        int id = names.intern(name);
+        name = names.name(id);
+        City c = new City(name, x, y, id);
+        boolean added = byCoord.insert(c);
+        if (!added) {
+            names.release(id);
+            return null;
+        }
+        else {
+            if (trigrams != null && names.refs(id) == 1) {
+                trigrams.add(id, name);
+            }
+            nameCounts.inc(id);
+            if (namesBuilt) {
+                coordsByName.add(name, x, y);
+                if (nameFilter != null && coordsByName.count(name) == 1) {
+                    nameFilter.add(name);
+                }
+            }
+            else {
+                if (pendingCount == pendingNames.length) {
+                    pendingNames =
+                        Arrays.copyOf(pendingNames, pendingCount * 2);
+                }
+                pendingNames[pendingCount++] = c;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Inserts many cities at once, as if by calling insert for each row in
+     * order, but rebuilds the name BST in O(n) instead of growing it one
+     * key at a time: the new cities are sorted with a parallel stable
+     * sort, merged with the existing ones and built into a balanced tree
+     * by {@link BST#buildFromSorted}. print() then shows that balanced
+     * shape. A load that adds few cities next to the current tree inserts
+     * them one at a time instead. Listeners hear of the load once, through
+     * {@link MutationListener#bulkLoaded}.
+     *
+     * @param cityNames names, one per row
+     * @param xs        x coordinates
+     * @param ys        y coordinates
+     * @return per-row success flags, as insert would report them
+     */
+    public boolean[] bulkLoad(String[] cityNames, int[] xs, int[] ys) {
+        int n = cityNames.length;
+        if (xs.length != n || ys.length != n) {
+            throw new IllegalArgumentException("row arrays differ in length");
+        }
+        boolean[] ok = new boolean[n];
+        admit();
+        lock.writeLock().lock();
+        try {
+            if (frozen != null) return ok;
+            City[] fresh = new City[n];
+            int added = 0;
+            for (int i = 0; i < n; i++) {
+                if (cityNames[i] == null || !inBounds(xs[i], ys[i])) continue;
+                City c = indexCity(cityNames[i], xs[i], ys[i]);
+                if (c == null) continue;
+                ok[i] = true;
+                fresh[added++] = c;
+            }
+            if (added == 0) return ok;
+            // decided on the cities added, so a replica replaying them
+            // builds the same shape
+            if (namesBuilt && added >= byName.size() / 8) {
+                rebuildNames(fresh, added);
+            }
+            else if (namesBuilt) {
+                for (int i = 0; i < added; i++) {
+                    byName.insert(fresh[i]);
+                }
+            }
+            City[] rows = Arrays.copyOf(fresh, added);
+            for (MutationListener l : listeners) {
+                l.bulkLoaded(rows);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        return ok;
+    }
+
+    /** Merges fresh[0..k) into the name BST and rebuilds it balanced. */
+    private void rebuildNames(City[] fresh, int k) {
+        // newest first, so the stable sort keeps equal names newest first
+        City[] add = new City[k];
+        for (int i = 0; i < k; i++) {
+            add[i] = fresh[k - 1 - i];
+        }
+        Arrays.parallelSort(add, City::compareTo);
+        City[] old = new City[byName.size()];
+        LevelCursor<City> cur = byName.inorderCursor(0);
+        for (int at = 0; cur.advance(); at++) {
+            old[at] = cur.item();
+        }
+        City[] all = new City[k + old.length];
+        int i = 0;
+        int j = 0;
+        int m = 0;
+        while (i < k || j < old.length) {
+            // on ties the newly loaded cities are the newer ones
+            if (j == old.length
+                || (i < k && add[i].compareTo(old[j]) <= 0)) {
+                all[m++] = add[i++];
+            }
+            else {
+                all[m++] = old[j++];
+            }
+        }
+        byName.buildFromSorted(all);
+    }
+
+    /** The shared name dictionary, for tests and output encoders. */
+    NameDictionary names() {
+        return names;
+    }
+
+    /** Removes from both indexes; caller holds the write lock. */
+    private KDTree.DeleteOutcome deleteCity(int x, int y) {
+        return deleteCity(x, y, true);
+    }
+
+    /**
+     * Removes from both indexes; caller holds the write lock.
+     *
+     * @param inMultimap false when the caller already took the city out of
+     *                   the name multimap and the name filter
+     */
+    private KDTree.DeleteOutcome deleteCity(int x, int y, boolean inMultimap) {
+        KDTree.DeleteOutcome out = byCoord.delete(x, y);
+        if (out.entry == null) return out;
+        String name = out.entry.getName();
+        if (namesBuilt) {
+            // both indexes hold the same City, so match it by identity
+            byName.removeMatching(out.entry, c -> c == out.entry);
+            if (inMultimap) {
+                coordsByName.remove(name, out.entry.getX(), out.entry.getY());
+                if (nameFilter != null && coordsByName.count(name) == 0) {
+                    nameFilter.remove(name);
+                }
+            }
+        }
+        else {
+            pendingDeletes = pendingDeletes + 1;
+            if (pendingDeletes > 1024 && pendingDeletes * 2 > pendingCount) {
+                pendingCount = livePending();
+                pendingDeletes = 0;
+            }
+        }
+        int id = out.entry.getNameId();
+        if (trigrams != null && names.refs(id) == 1) {
+            trigrams.remove(id, name);
+        }
+        nameCounts.dec(id);
+        names.release(id);
+        for (MutationListener l : listeners) {
+            l.deleted(out.entry);
+        }
+        return out;
+    }
+
+    /**
+     * Drops deleted cities from the pending list, keeping insertion order.
+     * A pending city is live iff the kd-tree still holds that instance.
+     *
+     * @return the new pending count
+     */
+    private int livePending() {
+        int m = 0;
+        for (int i = 0; i < pendingCount; i++) {
+            City c = pendingNames[i];
+            if (byCoord.findExact(c.getX(), c.getY()) == c) {
+                pendingNames[m++] = c;
+            }
+        }
+        Arrays.fill(pendingNames, m, pendingCount, null);
+        return m;
+    }
+
+    /**
+     * Builds a lazy name side if it is not built yet. Called before taking
+     * the read lock by the name queries.
+     */
+    private void ensureNames() {
+        if (namesBuilt) return;
+        lock.writeLock().lock();
+        try {
+            buildNames();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Takes the read lock with the name side built. */
+    private void lockNamesForRead() {
+        while (true) {
+            ensureNames();
+            lock.readLock().lock();
+            if (namesBuilt) return;
+            lock.readLock().unlock();     // cleared back to lazy meanwhile
+        }
+    }
+
+    /** Builds a pending name side; caller holds the write lock. */
+    private void buildNames() {
+        if (namesBuilt) return;
+        int k = livePending();
+        City[] live = pendingNames;
+        pendingNames = null;
+        pendingCount = 0;
+        pendingDeletes = 0;
+        for (int i = 0; i < k; i++) {
+            City c = live[i];
+            coordsByName.add(c.getName(), c.getX(), c.getY());
+            if (nameFilter != null && coordsByName.count(c.getName()) == 1) {
+                nameFilter.add(c.getName());
+            }
+        }
+        if (k > 0) {
+            rebuildNames(live, k);
+        }
+        namesBuilt = true;
     }
 
     /**
@@ -54,18 +582,18 @@ public class GISDB implements GIS {
      * @return String with result after running method
      */
     public String delete(int x, int y) {
-        if (byCoord.isEmpty()) return "";
-        KDTree.DeleteOutcome out = byCoord.delete(x, y);
-        if (out.entry == null) return "";
-        // remove exact (name,x,y) from BST using equals-left semantics
-        byName.removeMatching(new City(out.entry.getName(),
-            out.entry.getX(), out.entry.getY()),
-            c -> c.getX() == out.entry.getX() 
-                && c.getY() == out.entry.getY()
-                        && c.getName().equals(out.entry.getName()));
-        StringBuilder sb = new StringBuilder();
-        sb.append(out.visited).append("\n").append(out.entry.getName());
-        return sb.toString();
+        admit();
+        lock.writeLock().lock();
+        try {
+            if (frozen != null || byCoord.isEmpty()) return "";
+            KDTree.DeleteOutcome out = deleteCity(x, y);
+            if (out.entry == null) return "";
+            return new OutputEncoder().dictionary(names).number(out.visited)
+                .ascii('\n').name(out.entry).toString();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -77,110 +605,447 @@ public class GISDB implements GIS {
         if (name == null) {
             return "";
         }
+        admit();
+        lock.writeLock().lock();
+        try {
+            if (frozen != null) return "";
+            // a pending name side has not fed the filter yet
+            buildNames();
+            if (definitelyAbsent(name)) return "";
+            return deleteAll(name);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-        // 1) First pass: count matches (preorder over KDTree)
-        final int[] count = new int[] { 0 };
-        byCoord.preorderWithLevels((lvl, e) -> {
-            if (e.getName().equals(name)) {
-                count[0] = count[0] + 1;
+    private String deleteAll(String name) {
+        // one O(k) removal instead of k O(k) list shifts
+        int[] packed = coordsByName.removeAll(name);
+        if (nameFilter != null) {
+            if (packed.length == 0) {
+                nameFilter.recordFalsePositive();
+            }
+            else {
+                nameFilter.remove(name);
             }
-        });
-        int n = count[0];
-        if (n == 0) {
-            return "";
         }
+        // packed (x,y) values sort in (x,y) order
+        Arrays.sort(packed);
 
-        // 2) Second pass: collect coords into parallel arrays
-        int[] xs = new int[n];
-        int[] ys = new int[n];
-        final int[] idx = new int[] { 0 };
-        byCoord.preorderWithLevels((lvl, e) -> {
-            if (e.getName().equals(name)) {
-                xs[idx[0]] = e.getX();
-                ys[idx[0]] = e.getY();
-                idx[0] = idx[0] + 1;
-            }
-        });
-
-        // 3) Deterministic order: lexicographic by using insertion sort
-        for (int i = 1; i < n; i++) {
-            int kx = xs[i];
-            int ky = ys[i];
-            int j = i - 1;
-            while (j >= 0) {
-                // compare (kx,ky) < (xs[j],ys[j]) ?
-                boolean less = (kx < xs[j]) || (kx == xs[j] && ky < ys[j]);
-                if (!less) break;
-                xs[j + 1] = xs[j];
-                ys[j + 1] = ys[j];
-                j--;
-            }
-            xs[j + 1] = kx;
-            ys[j + 1] = ky;
-        }
-
-        // 4) Delete each coord; remove exact triple from BST; build output
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < n; i++) {
-            KDTree.DeleteOutcome out = byCoord.delete(xs[i], ys[i]);
+        OutputEncoder enc = new OutputEncoder().dictionary(names);
+        for (int p : packed) {
+            KDTree.DeleteOutcome out = deleteCity(NameMultimap.unpackX(p),
+                NameMultimap.unpackY(p), false);
             if (out.entry != null) {
-                byName.removeMatching(
-                    new City(out.entry.getName(), out.entry.getX(), 
-                        out.entry.getY()),
-                    c -> c.getX() == out.entry.getX()
-                      && c.getY() == out.entry.getY()
-                      && c.getName().equals(out.entry.getName())
-                );
-                sb.append(out.entry.getName()).append(" (")
-                  .append(out.entry.getX()).append(", ")
-                  .append(out.entry.getY()).append(")\n");
+                enc.cityLine(out.entry);
             }
         }
-        return sb.toString();
+        return enc.toString();
     }
 
+    // ------------------------------ Batches ------------------------------
+    /**
+     * An ordered list of point mutations for {@link GISDB#apply}.
+     * Only coordinate-keyed operations are batchable, so operations on
+     * different coordinates commute and the batch can be reordered.
+     */
+    public static final class Batch {
+        private final List<String> names = new ArrayList<>();
+        private int[] xs = new int[16];
+        private int[] ys = new int[16];
+        private int size;
+
+        /**
+         * Adds an insert of (name, x, y).
+         *
+         * @param name city name
+         * @param x    x coordinate
+         * @param y    y coordinate
+         * @return this batch
+         */
+        public Batch insert(String name, int x, int y) {
+            if (name == null) throw new IllegalArgumentException("null name");
+            return add(name, x, y);
+        }
+
+        /**
+         * Adds a delete of the city at (x, y).
+         *
+         * @param x x coordinate
+         * @param y y coordinate
+         * @return this batch
+         */
+        public Batch delete(int x, int y) {
+            return add(null, x, y);
+        }
 
+        private Batch add(String name, int x, int y) {
+            if (size == xs.length) {
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+            }
+            names.add(name);
+            xs[size] = x;
+            ys[size] = y;
+            size = size + 1;
+            return this;
+        }
 
-    /** Name at coordinate or empty string. 
+        /**
+         * Returns the number of operations.
+         *
+         * @return operation count
+         */
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Applies a batch atomically: every operation is validated first, then
+     * the surviving ones are applied to both indexes in (x, y) order under a
+     * single write lock, so readers see either none or all of the batch.
+     * Operations on the same coordinate keep their relative order.
+     *
+     * @param b batch to apply
+     * @return per-operation success flags, in input order; an insert fails
+     *         on bad coordinates or an occupied spot, a delete fails when the
+     *         spot is empty at that point of the batch
+     */
+    public boolean[] apply(Batch b) {
+        int n = b.size;
+        boolean[] ok = new boolean[n];
+        // key = packed (x,y) above the input index: sorting is stable
+        long[] order = new long[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (inBounds(b.xs[i], b.ys[i])) {
+                long xy = ((long) b.xs[i] << 15) | b.ys[i];
+                order[m] = (xy << 32) | i;
+                m = m + 1;
+            }
+        }
+        order = Arrays.copyOf(order, m);
+        Arrays.sort(order);
+
+        admit();
+        lock.writeLock().lock();
+        try {
+            if (frozen != null) return ok;
+            // validate: replay each coordinate's ops against its start state
+            int i = 0;
+            while (i < m) {
+                long xy = order[i] >>> 32;
+                int first = (int) order[i];
+                boolean present =
+                    byCoord.findExact(b.xs[first], b.ys[first]) != null;
+                while (i < m && (order[i] >>> 32) == xy) {
+                    int k = (int) order[i];
+                    boolean isInsert = b.names.get(k) != null;
+                    ok[k] = isInsert != present;
+                    if (ok[k]) present = isInsert;
+                    i = i + 1;
+                }
+            }
+            // apply in sorted order
+            for (i = 0; i < m; i++) {
+                int k = (int) order[i];
+                if (!ok[k]) continue;
+                String name = b.names.get(k);
+                if (name != null) {
+                    insertCity(name, b.xs[k], b.ys[k]);
+                }
+                else {
+                    deleteCity(b.xs[k], b.ys[k]);
+                }
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        return ok;
+    }
+
+    /** Name at coordinate or empty string.
      *@return  name at specified coordinates
      */
     public String info(int x, int y) {
-        City e = byCoord.findExact(x, y);
-        return (e != null) ? e.getName() : "";
+        lock.readLock().lock();
+        try {
+            City e = byCoord.findExact(x, y);
+            return (e != null) ? e.getName() : "";
+        }
+        finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
-     * Coordinates for all cities with the given name, 
-     * in BST inorder (equal names appear on the LEFT chain first).
+     * Coordinates for all cities with the given name, in insertion order
+     * (the reverse of BST inorder, where newer equal names sit deeper left).
      * @return Empty string when none match.
      */
     public String info(String name) {
         if (name == null) return "";
-        final int[] count = new int[] { 0 };
-        byName.inorderWithLevels((lvl, c) -> {
-            if (c.getName().equals(name)) count[0] = count[0] + 1;
-        });
-        if (count[0] == 0) return "";
-
-        int[] xs = new int[count[0]];
-        int[] ys = new int[count[0]];
-        final int[] idx = new int[] { 0 };
-        byName.inorderWithLevels((lvl, c) -> {
-            if (c.getName().equals(name)) {
-                xs[idx[0]] = c.getX();
-                ys[idx[0]] = c.getY();
-                idx[0] = idx[0] + 1;
-            }
-        });
+        lockNamesForRead();
+        try {
+            // names are built here, so the filter holds every live name
+            if (definitelyAbsent(name)) return "";
+            return infoByName(name);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private String infoByName(String name) {
+        // insertion order == reverse BST inorder among equal names
+        int[] packed = coordsOf(name);
+        if (packed.length == 0 && nameFilter != null) {
+            nameFilter.recordFalsePositive();
+        }
+        OutputEncoder enc = new OutputEncoder().dictionary(names);
+        for (int p : packed) {
+            enc.cityLine(name, -1, NameMultimap.unpackX(p),
+                NameMultimap.unpackY(p));
+        }
+        return enc.toString();
+    }
+
+    private int[] frozenCoords(String name) {
+        int i = frozen.find(name);
+        if (i < 0) return new int[0];
+        int from = frozen.firstRow(i);
+        int[] packed = new int[frozen.firstRow(i + 1) - from];
+        for (int k = 0; k < packed.length; k++) {
+            packed[k] = frozen.coord(from + packed.length - 1 - k);
+        }
+        return packed;
+    }
 
+    /**
+     * Lists up to {@code limit} cities whose name starts with
+     * {@code prefix}, in print() order, one "name (x, y)" per line.
+     *
+     * @param prefix name prefix ("" matches everything)
+     * @param limit  maximum number of lines
+     * @return the listing; empty when nothing matches
+     */
+    public String prefixSearch(String prefix, int limit) {
+        if (prefix == null) return "";
+        return nameRange(prefix, prefixEnd(prefix), limit);
+    }
+
+    /**
+     * Lists up to {@code limit} cities with lo <= name < hi, in print()
+     * order, one "name (x, y)" per line. A null bound is open.
+     *
+     * @param lo    inclusive lower bound or null
+     * @param hi    exclusive upper bound or null
+     * @param limit maximum number of lines
+     * @return the listing; empty when nothing matches
+     */
+    public String nameRange(String lo, String hi, int limit) {
+        OutputEncoder enc = new OutputEncoder().dictionary(names);
+        lockNamesForRead();
+        try {
+            if (frozen != null) {
+                frozen.range(lo, hi, limit, (level, name, p) ->
+                    enc.cityLine(name, -1, NameMultimap.unpackX(p),
+                        NameMultimap.unpackY(p)));
+                return enc.toString();
+            }
+            byName.range(
+                (lo == null) ? null : new City(lo, 0, 0),
+                (hi == null) ? null : new City(hi, 0, 0),
+                limit, enc::cityLine);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        return enc.toString();
+    }
+
+    /**
+     * Lists the k most common names, most cities first (ties by name), as
+     * "name count" lines. Which of several names tied at the cut-off make
+     * the list is unspecified. Counts are kept up to date on every insert
+     * and delete, so this costs O(k log k).
+     *
+     * @param k how many names
+     * @return the listing; empty when the database is empty
+     */
+    public String topNames(int k) {
+        List<String> rows = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int[] ids = nameCounts.top(k);
+            // the id order of equal counts is not the name order
+            Integer[] order = new Integer[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> {
+                int d = nameCounts.count(ids[b]) - nameCounts.count(ids[a]);
+                return (d != 0) ? d
+                    : names.name(ids[a]).compareTo(names.name(ids[b]));
+            });
+            for (int i : order) {
+                rows.add(names.name(ids[i]) + " "
+                    + nameCounts.count(ids[i]));
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
         StringBuilder sb = new StringBuilder();
-        for (int i = xs.length - 1; i >= 0; i = i - 1) {
-            sb.append(name).append(" (").append(xs[i])
-            .append(", ").append(ys[i]).append(")").append("\n");
+        for (String r : rows) {
+            sb.append(r).append("\n");
         }
         return sb.toString();
     }
 
+    /**
+     * Returns the number of distinct city names, in O(1).
+     *
+     * @return distinct name count
+     */
+    public int distinctNames() {
+        lock.readLock().lock();
+        try {
+            return nameCounts.distinct();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lists cities whose whole name matches a glob pattern ('*' matches any
+     * run of characters, '?' exactly one), e.g. "*field*" or "San ?os*".
+     * Names come in sorted order, each name's cities in print() order, one
+     * "name (x, y)" per line, at most {@code limit} lines. Uses the trigram
+     * index when enabled and the pattern has a literal run of 3 or more
+     * characters; otherwise every distinct name is tested.
+     *
+     * @param pattern glob pattern
+     * @param limit   maximum number of lines
+     * @return the listing; empty when nothing matches
+     */
+    public String wildcardSearch(String pattern, int limit) {
+        if (pattern == null || limit <= 0) return "";
+        OutputEncoder enc = new OutputEncoder().dictionary(names);
+        lockNamesForRead();
+        try {
+            int[] ids = (trigrams == null) ? null
+                : trigrams.candidates(pattern);
+            List<String> hits = new ArrayList<>();
+            if (ids == null) {
+                for (int id = 0; id < names.idBound(); id++) {
+                    String name = names.name(id);
+                    if (name != null && TrigramIndex.matches(pattern, name)) {
+                        hits.add(name);
+                    }
+                }
+            }
+            else {
+                for (int id : ids) {
+                    String name = names.name(id);
+                    if (TrigramIndex.matches(pattern, name)) {
+                        hits.add(name);
+                    }
+                }
+            }
+            hits.sort(null);
+            int lines = 0;
+            for (int i = 0; i < hits.size() && lines < limit; i++) {
+                String name = hits.get(i);
+                int[] packed = coordsOf(name);
+                // print() order is the reverse of insertion order
+                for (int k = packed.length - 1; k >= 0 && lines < limit; k--) {
+                    enc.cityLine(name, -1, NameMultimap.unpackX(packed[k]),
+                        NameMultimap.unpackY(packed[k]));
+                    lines = lines + 1;
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        return enc.toString();
+    }
+
+    /**
+     * Suggests names for a possibly misspelled fragment: distinct names
+     * sharing at least a third of the fragment's trigrams, most shared first
+     * (ties in no particular order), one per line. Needs
+     * {@link #enableTrigramIndex}.
+     *
+     * @param fragment query text, at least 3 characters
+     * @param limit    maximum number of names
+     * @return the names; empty without a trigram index or a match
+     */
+    public String similarNames(String fragment, int limit) {
+        if (fragment == null || limit <= 0) return "";
+        int grams = TrigramIndex.gramCount(fragment);
+        if (grams == 0) return "";
+        StringBuilder sb = new StringBuilder();
+        lock.readLock().lock();
+        try {
+            if (trigrams == null) return "";
+            int[] ids = trigrams.similar(fragment, Math.max(1, grams / 3));
+            for (int i = 0; i < ids.length && i < limit; i++) {
+                sb.append(names.name(ids[i])).append("\n");
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        return sb.toString();
+    }
+
+    /** Packed coordinates of a name in insertion order; caller locks. */
+    private int[] coordsOf(String name) {
+        return (frozen != null) ? frozenCoords(name) : coordsByName.get(name);
+    }
+
+    /**
+     * Smallest string greater than every string starting with prefix,
+     * or null when there is none (prefix empty or all '\uffff').
+     */
+    static String prefixEnd(String prefix) {
+        int i = prefix.length() - 1;
+        while (i >= 0 && prefix.charAt(i) == Character.MAX_VALUE) {
+            i = i - 1;
+        }
+        if (i < 0) return null;
+        return prefix.substring(0, i) + (char) (prefix.charAt(i) + 1);
+    }
+
+    /**
+     * Runs an aggregate over a stream of every city, in kd-tree inorder,
+     * under the read lock; mutations wait until it returns. A parallel
+     * stream splits the kd-tree across the common fork-join pool without
+     * copying the cities out. The stream must not escape the function.
+     *
+     * @param parallel whether the stream is parallel
+     * @param query    consumes the stream and returns the result
+     * @param <R>      result type
+     * @return the query result
+     */
+    public <R> R query(boolean parallel,
+                       Function<? super Stream<City>, ? extends R> query) {
+        lock.readLock().lock();
+        try {
+            return query.apply(parallel
+                ? byCoord.parallelStream() : byCoord.stream());
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
     /**
      * Performs a circular range search centered at the given coordinates.
      * Returns all matching city listings (if any), followed by the number
@@ -198,11 +1063,18 @@ public class GISDB implements GIS {
         if (radius < 0) {
             return "";
         }
-        KDTree.SearchOutcome res = byCoord.rangeSearch(x, y, radius);
-        StringBuilder sb = new StringBuilder();
-        sb.append(res.listing);
-        sb.append(res.visited);
-        return sb.toString();
+        OutputEncoder enc = new OutputEncoder().dictionary(names);
+        lock.readLock().lock();
+        try {
+            enc.number(byCoord.rangeSearch(x, y, radius, enc));
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);     // no sink, nothing thrown
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        return enc.toString();
     }
 
 
@@ -214,20 +1086,85 @@ public class GISDB implements GIS {
      * @return a string containing the kd-tree nodes in inorder, one per line
      */
     public String debug() {
-        StringBuilder sb = new StringBuilder();
-        byCoord.inorderWithLevels((level, e) -> {
-            sb.append(level);
-            for (int i = 0; i < 2 * level; i++) {
-                sb.append(" ");
-            }
-            sb.append(e.getName())
-              .append(" ")
-              .append(e.getX())
-              .append(" ")
-              .append(e.getY())
-              .append("\n");
-        });
-        return sb.toString();
+        OutputEncoder enc = new OutputEncoder().dictionary(names);
+        try {
+            writeDebug(enc, 0, Integer.MAX_VALUE);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);     // no sink, nothing thrown
+        }
+        return enc.toString();
+    }
+
+    /**
+     * Streams {@link #debug()} to out.
+     *
+     * @param out receives the lines
+     * @return number of lines written
+     * @throws IOException from out
+     */
+    public int debug(Appendable out) throws IOException {
+        return debug(out, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Streams {@link #debug()} to a channel as UTF-8.
+     *
+     * @param out receives the lines; not closed
+     * @return number of lines written
+     * @throws IOException from out
+     */
+    public int debug(WritableByteChannel out) throws IOException {
+        OutputEncoder enc = new OutputEncoder(out).dictionary(names);
+        int lines = writeDebug(enc, 0, Integer.MAX_VALUE);
+        enc.flush();
+        return lines;
+    }
+
+    /**
+     * Streams lines offset .. offset+limit-1 of {@link #debug()} to out,
+     * handing them over in chunks of about
+     * {@value OutputEncoder#FLUSH_BYTES} bytes. Kd-tree nodes keep no
+     * subtree counts, so reaching the offset costs O(offset). Holds the
+     * read lock until done; mutations wait.
+     *
+     * @param out    receives the lines
+     * @param offset first line to include (0-based)
+     * @param limit  maximum number of lines
+     * @return number of lines written
+     * @throws IOException from out
+     */
+    public int debug(Appendable out, int offset, int limit)
+        throws IOException {
+        OutputEncoder enc = new OutputEncoder(out).dictionary(names);
+        int lines = writeDebug(enc, offset, limit);
+        enc.flush();
+        return lines;
+    }
+
+    int writeDebug(OutputEncoder enc, int offset, int limit)
+        throws IOException {
+        int lines = 0;
+        lock.readLock().lock();
+        try {
+            if (offset < 0) return 0;
+            LevelCursor<City> cur = byCoord.inorderCursor();
+            int skipped = 0;
+            while (skipped < offset && cur.advance()) {
+                skipped = skipped + 1;
+            }
+            while (lines < limit && cur.advance()) {
+                City e = cur.item();
+                enc.indent(cur.level()).name(e).ascii(' ').number(e.getX())
+                   .ascii(' ').number(e.getY()).ascii('\n');
+                lines = lines + 1;
+                enc.flushIfFull();
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        return lines;
     }
 
     /**
@@ -238,21 +1175,132 @@ public class GISDB implements GIS {
      * @return a string containing the BST nodes in inorder, one per line
      */
     public String print() {
-        StringBuilder sb = new StringBuilder();
-        byName.inorderWithLevels((level, c) -> {
-            sb.append(level);
-            for (int i = 0; i < 2 * level; i++) {
-                sb.append(" ");
-            }
-            sb.append(c.getName())
-              .append(" (")
-              .append(c.getX())
-              .append(", ")
-              .append(c.getY())
-              .append(")")
-              .append("\n");
-        });
-        return sb.toString();
+        return print(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns one page of {@link #print()}: lines offset .. offset+limit-1.
+     * Runs in O(depth + limit).
+     *
+     * @param offset first line to include (0-based)
+     * @param limit  maximum number of lines
+     * @return the page, empty when offset is past the end
+     */
+    public String print(int offset, int limit) {
+        OutputEncoder enc = new OutputEncoder().dictionary(names);
+        try {
+            writePrint(enc, offset, limit);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return enc.toString();
+    }
+
+    /**
+     * Streams {@link #print()} to out.
+     *
+     * @param out receives the lines
+     * @return number of lines written
+     * @throws IOException from out
+     */
+    public int print(Appendable out) throws IOException {
+        return print(out, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Streams {@link #print()} to a channel as UTF-8.
+     *
+     * @param out receives the lines; not closed
+     * @return number of lines written
+     * @throws IOException from out
+     */
+    public int print(WritableByteChannel out) throws IOException {
+        OutputEncoder enc = new OutputEncoder(out).dictionary(names);
+        int lines = writePrint(enc, 0, Integer.MAX_VALUE);
+        enc.flush();
+        return lines;
+    }
+
+    /**
+     * Streams lines offset .. offset+limit-1 of {@link #print()} to out,
+     * handing them over in chunks of about
+     * {@value OutputEncoder#FLUSH_BYTES} bytes. Runs in
+     * O(depth + limit) and holds the read lock until done.
+     *
+     * @param out    receives the lines
+     * @param offset first line to include (0-based)
+     * @param limit  maximum number of lines
+     * @return number of lines written
+     * @throws IOException from out
+     */
+    public int print(Appendable out, int offset, int limit)
+        throws IOException {
+        OutputEncoder enc = new OutputEncoder(out).dictionary(names);
+        int lines = writePrint(enc, offset, limit);
+        enc.flush();
+        return lines;
+    }
+
+    int writePrint(OutputEncoder enc, int offset, int limit)
+        throws IOException {
+        int lines = 0;
+        lockNamesForRead();
+        try {
+            if (offset < 0) return 0;
+            if (frozen != null) {
+                int[] seen = new int[1];
+                try {
+                    frozen.rows(offset, Math.min(limit, frozen.size() - offset),
+                        (level, name, p) -> {
+                            enc.indent(level).cityLine(name, -1,
+                                NameMultimap.unpackX(p),
+                                NameMultimap.unpackY(p));
+                            seen[0] = seen[0] + 1;
+                            try {
+                                enc.flushIfFull();
+                            }
+                            catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                }
+                catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                lines = seen[0];
+            }
+            else {
+                LevelCursor<City> cur = byName.inorderCursor(offset);
+                while (lines < limit && cur.advance()) {
+                    enc.indent(cur.level()).cityLine(cur.item());
+                    lines = lines + 1;
+                    enc.flushIfFull();
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        return lines;
+    }
+
+    /**
+     * Number of cities whose name sorts strictly before {@code name}.
+     *
+     * @param name name to rank
+     * @return rank, i.e. the print() line where that name would start
+     */
+    public int rankOf(String name) {
+        if (name == null) return 0;
+        lockNamesForRead();
+        try {
+            if (frozen != null) return frozen.rank(name);
+            return byName.rank(new City(name, 0, 0));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
     }
 
 }
@@ -11,11 +11,18 @@
  *   info(x,y)/info(name), search(x,y,r) → matches then visit count,
  *   debug() → KD inorder; print() → BST inorder.
  *
- * Coordinates are validated (0..32767). This main class is a no-op entry point
- * for automated tests.
+ * Coordinates are validated (0..32767). main runs a command script through
+ * CommandProcessor; without arguments it does nothing, as automated tests
+ * expect.
  */
 
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * The class containing the main method.
@@ -53,14 +60,40 @@ import java.io.IOException;
 
 public class GISProj {
     /**
-     * This is nothing but a placeholder for test cases that call the interface
-     * methods.
+     * Runs a command script (see {@link CommandProcessor}) against a fresh
+     * database. With no arguments nothing happens, so test cases can still
+     * call the interface methods directly.
      *
      * @param args
-     *            Command line parameters: There are none
+     *            script file ("-" for standard input), then an optional
+     *            output file (standard output when absent)
      * @throws IOException
+     *            when a file cannot be read or written
      */
     public static void main(String[] args) throws IOException {
-        // There is nothing that we need to do here
+        if (args.length == 0) {
+            return;
+        }
+        ReadableByteChannel in = args[0].equals("-")
+            ? Channels.newChannel(System.in)
+            : FileChannel.open(Paths.get(args[0]));
+        WritableByteChannel out = (args.length > 1)
+            ? FileChannel.open(Paths.get(args[1]), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+            : Channels.newChannel(System.out);
+        try {
+            new CommandProcessor(new GISDB(), out).run(in);
+        }
+        finally {
+            if (args.length > 1) {
+                out.close();
+            }
+            else {
+                System.out.flush();
+            }
+            if (!args[0].equals("-")) {
+                in.close();
+            }
+        }
     }
 }
@@ -1,3 +1,9 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
 import student.TestCase;
 
 /**
@@ -1516,4 +1522,480 @@ public void testKdDeleteAtDepthOneUsesYMinFromRightSubtree() {
     assertTrue("Expected depth-1 replacement with coords (4,5). Debug was:\n" + debug,
                sawReplacement);
 }
+
+    // ------------------------------ batches ------------------------------
+
+    /** Batch results come back in input order with per-op validation. */
+    public void testApplyBatchResultsInInputOrder() {
+        GISDB g = new GISDB();
+        g.insert("Old", 5, 5);
+        GISDB.Batch b = new GISDB.Batch()
+            .insert("A", 30, 30)
+            .insert("B", 5, 5)
+            .delete(5, 5)
+            .insert("C", 5, 5)
+            .insert("Bad", -1, 0)
+            .delete(99, 99)
+            .insert("D", 1, 1);
+        boolean[] ok = g.apply(b);
+        assertEquals(7, ok.length);
+        assertTrue(ok[0]);
+        assertFalse(ok[1]);
+        assertTrue(ok[2]);
+        assertTrue(ok[3]);
+        assertFalse(ok[4]);
+        assertFalse(ok[5]);
+        assertTrue(ok[6]);
+        assertEquals("C", g.info(5, 5));
+        assertEquals("A", g.info(30, 30));
+        assertEquals("D", g.info(1, 1));
+        assertEquals("", g.info("Old"));
+        assertEquals("C (5, 5)\n", g.info("C"));
+    }
+
+    /** An empty batch is a no-op; a batch notifies listeners per op. */
+    public void testApplyBatchNotifiesListeners() {
+        GISDB g = new GISDB();
+        assertEquals(0, g.apply(new GISDB.Batch()).length);
+        final int[] seen = new int[2];
+        g.addListener(new MutationListener() {
+            public void inserted(City c) {
+                seen[0]++;
+            }
+
+            public void deleted(City c) {
+                seen[1]++;
+            }
+
+            public void cleared() {
+                // not used
+            }
+        });
+        g.apply(new GISDB.Batch().insert("A", 1, 1).insert("B", 2, 2)
+            .delete(1, 1));
+        assertEquals(2, seen[0]);
+        assertEquals(1, seen[1]);
+        assertEquals("", g.info(1, 1));
+    }
+
+    /** A balanced-name GISDB prints sorted input as a shallow tree. */
+    public void testBalancedNamesPrint() {
+        GISDB g = new GISDB(true);
+        g.insert("A", 1, 1);
+        g.insert("B", 2, 2);
+        g.insert("C", 3, 3);
+        assertEquals("1  A (1, 1)\n0B (2, 2)\n1  C (3, 3)\n", g.print());
+        assertTrue(g.delete(2, 2).endsWith("\nB"));
+        assertEquals("A (1, 1)\n", g.info("A"));
+    }
+
+    /** info(name) stays the reverse of print()'s inorder for that name. */
+    public void testInfoMatchesReversePrintOrder() {
+        GISDB g = new GISDB();
+        Random r = new Random(3);
+        for (int i = 0; i < 400; i++) {
+            int x = r.nextInt(60);
+            int y = r.nextInt(60);
+            if (r.nextInt(4) == 0) {
+                g.delete(x, y);
+            }
+            else {
+                g.insert("C" + r.nextInt(5), x, y);
+            }
+        }
+        for (int k = 0; k < 5; k++) {
+            String nm = "C" + k;
+            List<String> lines = new ArrayList<>();
+            for (String ln : g.print().split("\\R")) {
+                String body = ln.replaceFirst("^\\d+ *", "");
+                if (body.startsWith(nm + " ")) {
+                    lines.add(0, body);
+                }
+            }
+            StringBuilder want = new StringBuilder();
+            for (String ln : lines) {
+                want.append(ln).append("\n");
+            }
+            assertEquals(want.toString(), g.info(nm));
+        }
+    }
+
+    /** Prefix and name-range listings follow print() order and limits. */
+    public void testPrefixSearchAndNameRange() {
+        GISDB g = new GISDB();
+        g.insert("San Jose", 1, 1);
+        g.insert("Miami", 2, 2);
+        g.insert("San Diego", 3, 3);
+        g.insert("Sandusky", 4, 4);
+        g.insert("Nashville", 5, 5);
+        g.insert("San Jose", 6, 6);
+        assertEquals("San Diego (3, 3)\nSan Jose (6, 6)\n"
+            + "San Jose (1, 1)\n", g.prefixSearch("San ", 20));
+        assertEquals("San Diego (3, 3)\n", g.prefixSearch("San ", 1));
+        assertEquals("", g.prefixSearch("Zz", 5));
+        assertEquals(6, g.prefixSearch("", 10).split("\n").length);
+        assertEquals("Miami (2, 2)\n", g.nameRange("M", "N", 10));
+        assertEquals("Miami (2, 2)\nNashville (5, 5)\n",
+            g.nameRange(null, "O", 10));
+        assertEquals("ab", GISDB.prefixEnd("aa"));
+        assertEquals("b", GISDB.prefixEnd("a\uffff"));
+        assertNull(GISDB.prefixEnd(""));
+    }
+
+    /** Paged print() windows concatenate to the full print(). */
+    public void testPagedPrintAndRank() {
+        GISDB g = new GISDB();
+        for (int i = 0; i < 50; i++) {
+            g.insert("City" + (i * 7 % 50), i, i);
+        }
+        String full = g.print();
+        StringBuilder pages = new StringBuilder();
+        for (int off = 0; off < 60; off += 8) {
+            pages.append(g.print(off, 8));
+        }
+        assertEquals(full, pages.toString());
+        assertEquals("", g.print(50, 5));
+        int r = g.rankOf("City3");
+        String line = full.split("\n")[r];
+        assertTrue(line.contains("City3 ("));
+        assertEquals(0, g.rankOf("A"));
+        assertEquals(50, g.rankOf("Z"));
+    }
+
+    /**
+     * Both indexes share one City per row, named from the dictionary.
+     */
+    public void testNamesDictionaryShared() {
+        GISDB g = new GISDB();
+        g.insert(new String("Dup"), 1, 1);
+        g.insert(new String("Dup"), 2, 2);
+        g.insert("Dup", 2, 2);
+        NameDictionary d = g.names();
+        int id = d.id("Dup");
+        assertEquals(1, d.size());
+        assertEquals(2, d.refs(id));
+        assertTrue(g.print().contains("Dup (2, 2)"));
+        g.delete(1, 1);
+        assertEquals(1, d.refs(id));
+        g.delete("Dup");
+        assertEquals(0, d.size());
+        assertEquals("", g.info("Dup"));
+    }
+
+    /**
+     * Freezing the names keeps every name query's output and makes the
+     * database read-only until clear().
+     */
+    public void testFreezeNamesSameOutput() {
+        GISDB g = new GISDB();
+        Random rnd = new Random(40);
+        for (int i = 0; i < 3000; i++) {
+            g.insert("C" + rnd.nextInt(400), rnd.nextInt(30000),
+                rnd.nextInt(30000));
+        }
+        String print = g.print();
+        String page = g.print(1234, 50);
+        String info = g.info("C17");
+        String pre = g.prefixSearch("C1", 100);
+        String range = g.nameRange("C2", "C3", 20);
+        int rank = g.rankOf("C250");
+        assertTrue(g.freezeNames());
+        assertFalse(g.freezeNames());
+        assertNotNull(g.frozenNames());
+        assertEquals(print, g.print());
+        assertEquals(page, g.print(1234, 50));
+        assertEquals(info, g.info("C17"));
+        assertEquals(pre, g.prefixSearch("C1", 100));
+        assertEquals(range, g.nameRange("C2", "C3", 20));
+        assertEquals(rank, g.rankOf("C250"));
+        assertEquals("", g.info("nope"));
+        assertFalse(g.insert("New", 1, 1));
+        assertEquals("", g.delete("C17"));
+        String debug = g.debug();
+        assertEquals("", g.delete(0, 0) + g.delete(1, 1));
+        assertEquals(debug, g.debug());
+        g.clear();
+        assertNull(g.frozenNames());
+        assertTrue(g.insert("New", 1, 1));
+        assertEquals("0New (1, 1)\n", g.print());
+    }
+
+    /**
+     * Wildcard search gives the same answer with and without the trigram
+     * index, and the index follows inserts and deletes.
+     */
+    public void testWildcardSearch() {
+        GISDB plain = new GISDB();
+        GISDB indexed = new GISDB();
+        indexed.enableTrigramIndex();
+        String[] names = {"Springfield", "Fairfield", "Field", "Springdale",
+            "San Jose", "San Juan", "Fieldton"};
+        for (int i = 0; i < 70; i++) {
+            plain.insert(names[i % names.length], i, i);
+            indexed.insert(names[i % names.length], i, i);
+        }
+        String[] patterns = {"*field*", "San J*", "*a*", "Field*", "?ield",
+            "*ton", "*zz*"};
+        for (String p : patterns) {
+            assertEquals(p, plain.wildcardSearch(p, 1000),
+                indexed.wildcardSearch(p, 1000));
+        }
+        assertEquals("Fairfield (64, 64)\nFairfield (57, 57)\n",
+            indexed.wildcardSearch("*field*", 2));
+        assertTrue(indexed.wildcardSearch("Field*", 100)
+            .startsWith("Field (65, 65)\n"));
+        indexed.delete("Fairfield");
+        assertTrue(indexed.wildcardSearch("*field*", 1)
+            .startsWith("Springfield"));
+        assertEquals("Springfield\n", indexed.similarNames("Sprngfeld", 1));
+        assertEquals("", plain.similarNames("Sprngfeld", 1));
+        indexed.clear();
+        assertEquals("", indexed.wildcardSearch("*field*", 10));
+        indexed.insert("Westfield", 1, 1);
+        assertEquals("Westfield (1, 1)\n",
+            indexed.wildcardSearch("*field", 10));
+    }
+
+    /**
+     * Name counts follow inserts and deletes.
+     */
+    public void testTopNamesAndDistinct() {
+        GISDB g = new GISDB();
+        assertEquals("", g.topNames(3));
+        assertEquals(0, g.distinctNames());
+        for (int i = 0; i < 5; i++) {
+            g.insert("Five", i, 0);
+        }
+        for (int i = 0; i < 3; i++) {
+            g.insert("Three", i, 1);
+            g.insert("Also3", i, 2);
+        }
+        g.insert("One", 9, 9);
+        g.insert("Dup", 9, 9);
+        assertEquals(4, g.distinctNames());
+        assertEquals("Five 5\nAlso3 3\nThree 3\n", g.topNames(3));
+        g.delete("Five");
+        g.delete(0, 1);
+        assertEquals("Also3 3\nThree 2\nOne 1\n", g.topNames(10));
+        assertEquals(3, g.distinctNames());
+        g.clear();
+        assertEquals(0, g.distinctNames());
+    }
+
+    /**
+     * bulkLoad matches row-by-row inserts in everything but tree shape.
+     */
+    public void testBulkLoadMatchesInserts() {
+        GISDB one = new GISDB();
+        GISDB bulk = new GISDB();
+        Random rnd = new Random(43);
+        String[] n = new String[4000];
+        int[] xs = new int[n.length];
+        int[] ys = new int[n.length];
+        for (int i = 0; i < n.length; i++) {
+            n[i] = (i % 500 == 0) ? null : "N" + rnd.nextInt(300);
+            xs[i] = rnd.nextInt(200);
+            ys[i] = (i % 777 == 0) ? -1 : rnd.nextInt(200);
+        }
+        one.insert("N5", 500, 500);
+        bulk.insert("N5", 500, 500);
+        boolean[] ok = bulk.bulkLoad(n, xs, ys);
+        for (int i = 0; i < n.length; i++) {
+            assertEquals(one.insert(n[i], xs[i], ys[i]), ok[i]);
+        }
+        assertEquals(one.info("N5"), bulk.info("N5"));
+        assertEquals(one.debug(), bulk.debug());
+        assertEquals(one.print().replaceAll("(?m)^\\d+ *", ""),
+            bulk.print().replaceAll("(?m)^\\d+ *", ""));
+        assertTrue(bulk.print().split("\n").length > 1000);
+        assertEquals(one.topNames(5), bulk.topNames(5));
+        // a small load next to a large tree goes in one by one
+        boolean[] small = bulk.bulkLoad(new String[] {"N1", "N1"},
+            new int[] {300, 300}, new int[] {1, 1});
+        assertTrue(small[0]);
+        assertFalse(small[1]);
+        assertTrue(bulk.info("N1").endsWith("N1 (300, 1)\n"));
+    }
+
+    /**
+     * A lazy name side answers like an eager one once built, including
+     * after deletes it only counted, and goes back to lazy on clear().
+     */
+    public void testLazyNamesMatchEager() {
+        GISDB eager = new GISDB();
+        GISDB lazy = new GISDB(GISDB.LAZY_NAMES);
+        Random rnd = new Random(44);
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 6000; i++) {
+                String name = "L" + rnd.nextInt(200);
+                int x = rnd.nextInt(100);
+                int y = rnd.nextInt(100);
+                if (rnd.nextInt(3) == 0) {
+                    assertEquals(eager.delete(x, y), lazy.delete(x, y));
+                }
+                else {
+                    assertEquals(eager.insert(name, x, y),
+                        lazy.insert(name, x, y));
+                }
+            }
+            assertEquals(eager.debug(), lazy.debug());
+            assertEquals(eager.topNames(3), lazy.topNames(3));
+            for (int k = 0; k < 200; k += 13) {
+                assertEquals(eager.info("L" + k), lazy.info("L" + k));
+            }
+            assertEquals(eager.print().replaceAll("(?m)^\\d+ *", ""),
+                lazy.print().replaceAll("(?m)^\\d+ *", ""));
+            // built now: later changes are applied in place
+            assertEquals(eager.delete("L7"), lazy.delete("L7"));
+            assertEquals(eager.insert("L7", 500, 500),
+                lazy.insert("L7", 500, 500));
+            assertEquals(eager.info("L7"), lazy.info("L7"));
+            assertEquals(eager.prefixSearch("L1", 50),
+                lazy.prefixSearch("L1", 50));
+            assertTrue(lazy.namesBuilt());
+            eager.clear();
+            lazy.clear();
+            assertFalse(lazy.namesBuilt());
+        }
+        assertTrue(eager.namesBuilt());
+        lazy.insert("Z", 1, 1);
+        assertFalse(lazy.namesBuilt());
+        assertEquals("0Z (1, 1)\n", lazy.print());
+        // churn compacts the pending list without losing order
+        GISDB churn = new GISDB(GISDB.LAZY_NAMES);
+        churn.insert("Keep", 0, 0);
+        for (int i = 0; i < 5000; i++) {
+            churn.insert("Tmp", 1, 1);
+            churn.delete(1, 1);
+        }
+        churn.insert("Keep", 2, 2);
+        assertEquals("Keep (0, 0)\nKeep (2, 2)\n", churn.info("Keep"));
+        assertEquals("", churn.info("Tmp"));
+    }
+
+    /**
+     * query() runs stream aggregates over every city, sequential or
+     * parallel, with the same answer.
+     */
+    public void testQueryStreams() {
+        GISDB db = new GISDB();
+        Random r = new Random(47);
+        int n = 0;
+        while (n < 1000) {
+            if (db.insert("Q" + r.nextInt(50), r.nextInt(1000),
+                r.nextInt(1000))) {
+                n = n + 1;
+            }
+        }
+        for (boolean par : new boolean[] { false, true }) {
+            Map<String, Long> perName = db.query(par, s -> s.collect(
+                Collectors.groupingBy(City::getName,
+                    Collectors.counting())));
+            assertEquals(1000L, perName.values().stream()
+                .mapToLong(Long::longValue).sum());
+            assertEquals(db.distinctNames(), perName.size());
+            long[] hist = db.query(par, s -> {
+                long[] h = new long[10];
+                s.mapToInt(c -> c.getX() / 100).sequential()
+                    .forEach(b -> h[b]++);
+                return h;
+            });
+            assertEquals(1000L, Arrays.stream(hist).sum());
+        }
+        long empty = new GISDB().query(true, s -> s.count());
+        assertEquals(0, empty);
+    }
+
+    /**
+     * Streaming debug() and print() write the same text as the String
+     * forms, to a Writer, a channel or any Appendable, in bounded chunks,
+     * and pages match the String pages, frozen or not.
+     *
+     * @throws Exception on failure
+     */
+    public void testStreamingDumps() throws Exception {
+        GISDB db = new GISDB();
+        Random r = new Random(48);
+        int n = 0;
+        while (n < 3000) {
+            if (db.insert("D" + r.nextInt(400), r.nextInt(30000),
+                r.nextInt(30000))) {
+                n = n + 1;
+            }
+        }
+        for (int round = 0; round < 2; round++) {
+            java.io.StringWriter w = new java.io.StringWriter();
+            assertEquals(3000, db.debug(w));
+            assertEquals(db.debug(), w.toString());
+            w = new java.io.StringWriter();
+            assertEquals(3000, db.print(w));
+            assertEquals(db.print(), w.toString());
+
+            java.io.ByteArrayOutputStream bytes =
+                new java.io.ByteArrayOutputStream();
+            assertEquals(3000,
+                db.print(java.nio.channels.Channels.newChannel(bytes)));
+            assertEquals(db.print(), bytes.toString("UTF-8"));
+            bytes.reset();
+            db.debug(java.nio.channels.Channels.newChannel(bytes));
+            assertEquals(db.debug(), bytes.toString("UTF-8"));
+
+            int[] calls = new int[2];
+            Appendable chunks = new Appendable() {
+                public Appendable append(CharSequence cs) {
+                    calls[0] = calls[0] + 1;
+                    calls[1] = Math.max(calls[1], cs.length());
+                    return this;
+                }
+                public Appendable append(CharSequence cs, int s, int e) {
+                    return append(cs.subSequence(s, e));
+                }
+                public Appendable append(char c) {
+                    return append(String.valueOf(c));
+                }
+            };
+            db.print(chunks);
+            assertTrue(calls[0] > 1);
+            assertTrue(calls[1] < OutputEncoder.FLUSH_BYTES + 200);
+
+            StringBuilder page = new StringBuilder();
+            assertEquals(40, db.print(page, 1234, 40));
+            assertEquals(db.print(1234, 40), page.toString());
+            page.setLength(0);
+            assertEquals(5, db.print(page, 2995, 40));
+            assertEquals(db.print(2995, 40), page.toString());
+            assertEquals(0, db.print(page, 3000, 40));
+            assertEquals(0, db.print(page, -1, 40));
+            page.setLength(0);
+            assertEquals(7, db.debug(page, 100, 7));
+            String[] all = db.debug().split("\n", -1);
+            StringBuilder expect = new StringBuilder();
+            for (int i = 100; i < 107; i++) {
+                expect.append(all[i]).append("\n");
+            }
+            assertEquals(expect.toString(), page.toString());
+
+            db.freezeNames();
+        }
+    }
+
+    /**
+     * Frozen name ranges with an unbounded limit that start past the
+     * first row list the same cities as the unfrozen index.
+     */
+    public void testFrozenRangeMaxLimit() {
+        GISDB g = new GISDB();
+        String[] names = { "A", "B", "Bb", "C", "Cc", "D" };
+        for (int i = 0; i < 60; i++) {
+            g.insert(names[i % names.length], i, 2 * i);
+        }
+        String pre = g.prefixSearch("B", Integer.MAX_VALUE);
+        String range = g.nameRange("C", null, Integer.MAX_VALUE);
+        String page = g.print(7, Integer.MAX_VALUE);
+        assertEquals(20, pre.split("\n").length);
+        assertTrue(g.freezeNames());
+        assertEquals(pre, g.prefixSearch("B", Integer.MAX_VALUE));
+        assertEquals(range, g.nameRange("C", null, Integer.MAX_VALUE));
+        assertEquals(page, g.print(7, Integer.MAX_VALUE));
+    }
 }
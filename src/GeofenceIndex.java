@@ -0,0 +1,299 @@
+import java.util.Arrays;
+
+/**
+ * Standing "alert me when a city appears or disappears within r of (x, y)"
+ * queries. Registered circles live in a hierarchy of uniform grids over
+ * the coordinate space, each level's cells twice as wide as the level
+ * below. A circle goes to the finest level where it covers at most
+ * {@link #MAX_CELLS} cells, so each insert or delete runs one stabbing
+ * query per level, on a single cell, instead of re-running a range
+ * search per subscription.
+ *
+ * <p>Each fence counts the cities it has seen appear and not yet
+ * disappear. A clear of the database is reported once per fence with a
+ * non-zero count, as a disappearance with a null city: whatever the fence
+ * held is gone. Cities already inside a fence when it registers are not
+ * counted, since the index never saw them appear.
+ *
+ * <p>Ids of unregistered fences, and their slots, are handed out again.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class GeofenceIndex implements MutationListener {
+
+    /**
+     * Receives fence hits.
+     */
+    interface Alert {
+        /**
+         * A city appeared in or disappeared from a fence.
+         *
+         * @param fence    id returned by {@link GeofenceIndex#register}
+         * @param appeared true on insert, false on delete or clear
+         * @param c        the city, or null when the database was cleared
+         */
+        void fired(int fence, boolean appeared, City c);
+    }
+
+    /** Cell edge length at the finest level is 1 &lt;&lt; CELL_SHIFT. */
+    static final int CELL_SHIFT = 8;
+    /** Circles spanning more cells than this go to a coarser level. */
+    static final int MAX_CELLS = 64;
+    /** Grid levels; the coarsest is a single cell. */
+    static final int LEVELS = levels();
+
+    private int[] cx = new int[16];
+    private int[] cy = new int[16];
+    private int[] radius = new int[16];
+    private int[] level = new int[16];     // -1 when off the map
+    private int[] occupied = new int[16];  // appeared minus disappeared
+    private Alert[] alerts = new Alert[16];
+    private int count;                      // slots handed out so far
+    private int live;
+    private int[] free = new int[16];       // recycled ids
+    private int freeCount;
+
+    private final int[][][] cells = new int[LEVELS][][];
+    private final int[][] cellSize = new int[LEVELS][];
+
+    /** Creates an index with no fences. */
+    GeofenceIndex() {
+        for (int l = 0; l < LEVELS; l++) {
+            int side = side(l);
+            cells[l] = new int[side * side][];
+            cellSize[l] = new int[side * side];
+        }
+    }
+
+    /**
+     * Registers a standing query.
+     *
+     * @param x      circle center x (may lie outside the map)
+     * @param y      circle center y (may lie outside the map)
+     * @param r      radius, non-negative; the boundary counts as inside
+     * @param alert  callback for hits
+     * @return fence id for {@link #unregister}
+     */
+    public synchronized int register(int x, int y, int r, Alert alert) {
+        if (r < 0 || alert == null) {
+            throw new IllegalArgumentException("bad fence");
+        }
+        int id;
+        if (freeCount > 0) {
+            id = free[--freeCount];
+        }
+        else {
+            if (count == cx.length) {
+                int n = count * 2;
+                cx = Arrays.copyOf(cx, n);
+                cy = Arrays.copyOf(cy, n);
+                radius = Arrays.copyOf(radius, n);
+                level = Arrays.copyOf(level, n);
+                occupied = Arrays.copyOf(occupied, n);
+                alerts = Arrays.copyOf(alerts, n);
+            }
+            id = count;
+            count = count + 1;
+        }
+        cx[id] = x;
+        cy[id] = y;
+        radius[id] = r;
+        alerts[id] = alert;
+        occupied[id] = 0;
+        live = live + 1;
+
+        level[id] = -1;
+        for (int l = 0; l < LEVELS; l++) {
+            int[] box = cellBox(id, l);
+            if (box == null) return id;  // never reaches the map
+            long span = (long) (box[2] - box[0] + 1) * (box[3] - box[1] + 1);
+            if (span <= MAX_CELLS || l == LEVELS - 1) {
+                level[id] = l;
+                int side = side(l);
+                for (int gy = box[1]; gy <= box[3]; gy++) {
+                    for (int gx = box[0]; gx <= box[2]; gx++) {
+                        addToCell(l, gy * side + gx, id);
+                    }
+                }
+                return id;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Removes a standing query; its alert is not called again, and its id
+     * may be returned by a later register.
+     *
+     * @param id fence id
+     * @return true if the fence was registered
+     */
+    public synchronized boolean unregister(int id) {
+        if (id < 0 || id >= count || alerts[id] == null) return false;
+        alerts[id] = null;
+        live = live - 1;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = id;
+        int l = level[id];
+        if (l < 0) return true;
+        int[] box = cellBox(id, l);
+        int side = side(l);
+        for (int gy = box[1]; gy <= box[3]; gy++) {
+            for (int gx = box[0]; gx <= box[2]; gx++) {
+                int c = gy * side + gx;
+                cellSize[l][c] = removeId(cells[l][c], cellSize[l][c], id);
+                if (cellSize[l][c] == 0) {
+                    cells[l][c] = null;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of registered fences.
+     *
+     * @return live fence count
+     */
+    public synchronized int size() {
+        return live;
+    }
+
+    /**
+     * Returns how many fence slots exist, live or free.
+     *
+     * @return slot count
+     */
+    synchronized int slots() {
+        return count;
+    }
+
+    /** {@inheritDoc} */
+    public void inserted(City c) {
+        stab(c, true);
+    }
+
+    /** {@inheritDoc} */
+    public void deleted(City c) {
+        stab(c, false);
+    }
+
+    /**
+     * Tells every fence that holds cities that they disappeared, with a
+     * null city.
+     */
+    public synchronized void cleared() {
+        for (int id = 0; id < count; id++) {
+            if (alerts[id] != null && occupied[id] > 0) {
+                occupied[id] = 0;
+                alerts[id].fired(id, false, null);
+            }
+        }
+    }
+
+    /**
+     * Returns how many cities a fence holds, as far as it has seen.
+     *
+     * @param id fence id
+     * @return appeared minus disappeared, never below 0
+     */
+    synchronized int occupancy(int id) {
+        return occupied[id];
+    }
+
+    /**
+     * Calls the alert of every fence containing the city.
+     *
+     * @param c        city that changed
+     * @param appeared true on insert
+     * @return number of fences hit
+     */
+    synchronized int stab(City c, boolean appeared) {
+        int px = c.getX();
+        int py = c.getY();
+        int hits = 0;
+        for (int l = 0; l < LEVELS; l++) {
+            int shift = CELL_SHIFT + l;
+            int cell = (py >> shift) * side(l) + (px >> shift);
+            int[] ids = cells[l][cell];
+            for (int i = 0; i < cellSize[l][cell]; i++) {
+                hits += hit(ids[i], px, py, appeared, c);
+            }
+        }
+        return hits;
+    }
+
+    private int hit(int id, int px, int py, boolean appeared, City c) {
+        long dx = (long) px - cx[id];
+        long dy = (long) py - cy[id];
+        long r = radius[id];
+        if (dx * dx + dy * dy > r * r) return 0;
+        if (appeared) {
+            occupied[id] = occupied[id] + 1;
+        }
+        else if (occupied[id] > 0) {
+            occupied[id] = occupied[id] - 1;
+        }
+        alerts[id].fired(id, appeared, c);
+        return 1;
+    }
+
+    /**
+     * Cells of a level touched by the fence's bounding box, clamped to the
+     * map.
+     *
+     * @return {minGX, minGY, maxGX, maxGY} or null when off the map
+     */
+    private int[] cellBox(int id, int l) {
+        long minX = Math.max(0L, (long) cx[id] - radius[id]);
+        long minY = Math.max(0L, (long) cy[id] - radius[id]);
+        long maxX = Math.min(GISDB.MAXCOORD, (long) cx[id] + radius[id]);
+        long maxY = Math.min(GISDB.MAXCOORD, (long) cy[id] + radius[id]);
+        if (minX > maxX || minY > maxY) return null;
+        int shift = CELL_SHIFT + l;
+        return new int[] {
+            (int) minX >> shift, (int) minY >> shift,
+            (int) maxX >> shift, (int) maxY >> shift };
+    }
+
+    private static int side(int l) {
+        return (GISDB.MAXCOORD >> (CELL_SHIFT + l)) + 1;
+    }
+
+    private static int levels() {
+        int l = 0;
+        while (side(l) > 1) {
+            l = l + 1;
+        }
+        return l + 1;
+    }
+
+    private void addToCell(int l, int c, int id) {
+        int[] ids = cells[l][c];
+        if (ids == null) {
+            ids = new int[4];
+            cells[l][c] = ids;
+        }
+        else if (cellSize[l][c] == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+            cells[l][c] = ids;
+        }
+        ids[cellSize[l][c]] = id;
+        cellSize[l][c] = cellSize[l][c] + 1;
+    }
+
+    /** Swap-removes {@code id}; returns the new size. */
+    private static int removeId(int[] ids, int size, int id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                ids[i] = ids[size - 1];
+                return size - 1;
+            }
+        }
+        return size;
+    }
+}
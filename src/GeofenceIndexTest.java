@@ -0,0 +1,159 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * Tests standing geofence queries fed by GISDB mutations.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+public class GeofenceIndexTest extends TestCase {
+
+    private GISDB db;
+    private GeofenceIndex fences;
+    private List<String> log;
+    private GeofenceIndex.Alert record;
+
+    /**
+     * Database with a geofence index attached.
+     */
+    public void setUp() {
+        db = new GISDB();
+        fences = new GeofenceIndex();
+        db.addListener(fences);
+        log = new ArrayList<>();
+        record = (id, appeared, c) ->
+            log.add(id + (appeared ? "+" : "-") + c.getName());
+    }
+
+    /**
+     * Hits include the boundary; misses are silent; deletes report "-".
+     */
+    public void testAppearAndDisappear() {
+        int a = fences.register(100, 100, 5, record);
+        int b = fences.register(300, 300, 10, record);
+        db.insert("Edge", 105, 100);
+        db.insert("Out", 106, 100);
+        db.insert("In", 302, 298);
+        db.delete(105, 100);
+        assertEquals(a + "+Edge", log.get(0));
+        assertEquals(b + "+In", log.get(1));
+        assertEquals(a + "-Edge", log.get(2));
+        assertEquals(3, log.size());
+    }
+
+    /**
+     * Circles crossing cell borders, huge circles and off-map circles.
+     */
+    public void testCellsOverflowAndOffMap() {
+        int small = fences.register(255, 255, 2, record);
+        int huge = fences.register(16000, 16000, 40000, record);
+        fences.register(-100, -100, 10, record);
+        db.insert("X", 256, 256);
+        assertTrue(log.contains(small + "+X"));
+        assertTrue(log.contains(huge + "+X"));
+        assertEquals(2, log.size());
+        assertEquals(3, fences.size());
+    }
+
+    /**
+     * Unregistered fences stop firing; name deletes report each city.
+     */
+    public void testUnregister() {
+        int a = fences.register(10, 10, 50, record);
+        db.insert("P", 10, 10);
+        db.insert("P", 20, 20);
+        assertTrue(fences.unregister(a));
+        assertFalse(fences.unregister(a));
+        db.delete("P");
+        assertEquals(2, log.size());
+        assertEquals(0, fences.size());
+        int b = fences.register(10, 10, 50, record);
+        db.insert("Q", 11, 11);
+        assertEquals(b + "+Q", log.get(2));
+    }
+
+    /**
+     * Fences of every size, on any grid level, fire exactly when a
+     * brute-force distance check says so.
+     */
+    public void testLevelsAgainstBruteForce() {
+        Random rnd = new Random(29);
+        int n = 300;
+        int[][] circles = new int[n][];
+        int[] fired = new int[n];
+        for (int i = 0; i < n; i++) {
+            int r = (i % 3 == 0) ? rnd.nextInt(20000) : rnd.nextInt(600);
+            circles[i] = new int[] { rnd.nextInt(40000) - 4000,
+                rnd.nextInt(40000) - 4000, r };
+            assertEquals(i, fences.register(circles[i][0], circles[i][1], r,
+                (id, appeared, c) -> fired[id]++));
+        }
+        for (int k = 0; k < 500; k++) {
+            City c = new City("C", rnd.nextInt(GISDB.MAXCOORD + 1),
+                rnd.nextInt(GISDB.MAXCOORD + 1));
+            Arrays.fill(fired, 0);
+            int hits = fences.stab(c, true);
+            int expect = 0;
+            for (int i = 0; i < n; i++) {
+                long dx = c.getX() - circles[i][0];
+                long dy = c.getY() - circles[i][1];
+                long r = circles[i][2];
+                int in = (dx * dx + dy * dy <= r * r) ? 1 : 0;
+                assertEquals(in, fired[i]);
+                expect = expect + in;
+            }
+            assertEquals(expect, hits);
+        }
+    }
+
+    /**
+     * A clear tells each fence holding cities once, with a null city;
+     * empty fences hear nothing.
+     */
+    public void testClearDisappears() {
+        List<String> events = new ArrayList<>();
+        GeofenceIndex.Alert any = (id, appeared, c) -> events.add(id
+            + (appeared ? "+" : "-") + (c == null ? "*" : c.getName()));
+        int a = fences.register(10, 10, 5, any);
+        int b = fences.register(30000, 30000, 5, any);
+        fences.register(-100, -100, 5, any);
+        int gone = fences.register(50, 50, 5, any);
+        fences.unregister(gone);
+        int emptied = fences.register(200, 200, 5, any);
+        db.insert("A", 10, 10);
+        db.insert("B", 11, 11);
+        db.insert("E", 200, 200);
+        db.delete(200, 200);
+        assertEquals(2, fences.occupancy(a));
+        assertEquals(0, fences.occupancy(b));
+        assertEquals(0, fences.occupancy(emptied));
+        assertTrue(db.clear());
+        assertEquals(Arrays.asList(a + "+A", a + "+B", emptied + "+E",
+            emptied + "-E", a + "-*"), events);
+        assertEquals(0, fences.occupancy(a));
+        events.clear();
+        assertTrue(db.clear());
+        assertEquals(0, events.size());
+    }
+
+    /**
+     * Unregistered ids and their slots are reused, so churn does not
+     * grow the index.
+     */
+    public void testIdsReused() {
+        int keep = fences.register(100, 100, 10, record);
+        for (int i = 0; i < 10000; i++) {
+            int id = fences.register(i % 30000, 200, 300, record);
+            assertTrue(fences.unregister(id));
+        }
+        assertEquals(2, fences.slots());
+        assertEquals(1, fences.size());
+        db.insert("K", 100, 100);
+        assertEquals(Arrays.asList(keep + "+K"), log);
+    }
+}
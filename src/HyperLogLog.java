@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+/**
+ * HyperLogLog distinct-count estimator for name streams too large to keep.
+ * 2^p one-byte registers; the standard error is about 1.04 / sqrt(2^p)
+ * (p = 14: 16 KiB, ~0.8%). Small cardinalities fall back to linear
+ * counting. Sketches with the same p can be merged.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class HyperLogLog {
+
+    private final int p;
+    private final byte[] registers;
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param p precision, 4..18; uses 2^p bytes
+     */
+    HyperLogLog(int p) {
+        if (p < 4 || p > 18) {
+            throw new IllegalArgumentException("precision " + p);
+        }
+        this.p = p;
+        this.registers = new byte[1 << p];
+    }
+
+    /**
+     * Adds a name.
+     *
+     * @param name the name
+     */
+    public void add(String name) {
+        addHash(hash(name));
+    }
+
+    /**
+     * Adds an already hashed item; the 64 bits must be well mixed.
+     *
+     * @param h 64-bit hash
+     */
+    public void addHash(long h) {
+        int idx = (int) (h >>> (64 - p));
+        // rank of the first 1 bit in the remaining 64 - p bits
+        long rest = (h << p) | (1L << (p - 1));
+        int rank = Long.numberOfLeadingZeros(rest) + 1;
+        if (rank > registers[idx]) {
+            registers[idx] = (byte) rank;
+        }
+    }
+
+    /**
+     * Returns the estimated number of distinct items added.
+     *
+     * @return estimate
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum = sum + 1.0 / (1L << r);
+            if (r == 0) zeros = zeros + 1;
+        }
+        double alpha = (m == 16) ? 0.673 : (m == 32) ? 0.697
+            : (m == 64) ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double e = alpha * m * (double) m / sum;
+        if (e <= 2.5 * m && zeros > 0) {
+            e = m * Math.log((double) m / zeros);    // linear counting
+        }
+        return Math.round(e);
+    }
+
+    /**
+     * Folds another sketch with the same precision into this one.
+     *
+     * @param other sketch to merge
+     */
+    public void merge(HyperLogLog other) {
+        if (other.p != p) {
+            throw new IllegalArgumentException("precision mismatch");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /** Forgets everything added. */
+    public void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    /**
+     * 64-bit hash of a string's chars (FNV-1a, then a murmur3 finalizer).
+     *
+     * @param s string
+     * @return mixed hash
+     */
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
@@ -0,0 +1,60 @@
+import student.TestCase;
+
+/**
+ * Tests the HyperLogLog distinct counter.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+public class HyperLogLogTest extends TestCase {
+
+    /**
+     * Estimates stay within a few standard errors, repeats are free.
+     */
+    public void testEstimateWithinError() {
+        int[] sizes = {0, 1, 100, 5000, 200000};
+        for (int n : sizes) {
+            HyperLogLog h = new HyperLogLog(14);
+            for (int rep = 0; rep < 3; rep++) {
+                for (int i = 0; i < n; i++) {
+                    h.add("City" + i);
+                }
+            }
+            double err = Math.abs(h.estimate() - n) / Math.max(1.0, n);
+            assertTrue(n + ": " + h.estimate(), err < 0.03);
+        }
+    }
+
+    /**
+     * Merged sketches estimate the union.
+     */
+    public void testMerge() {
+        HyperLogLog a = new HyperLogLog(12);
+        HyperLogLog b = new HyperLogLog(12);
+        for (int i = 0; i < 30000; i++) {
+            a.add("N" + i);
+            b.add("N" + (i + 15000));
+        }
+        a.merge(b);
+        assertTrue(Math.abs(a.estimate() - 45000) < 45000 * 0.06);
+        a.clear();
+        assertEquals(0, a.estimate());
+        Exception e = null;
+        try {
+            a.merge(new HyperLogLog(10));
+        }
+        catch (IllegalArgumentException ex) {
+            e = ex;
+        }
+        assertNotNull(e);
+        e = null;
+        try {
+            new HyperLogLog(2);
+        }
+        catch (IllegalArgumentException ex) {
+            e = ex;
+        }
+        assertNotNull(e);
+    }
+}
@@ -1,5 +1,11 @@
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.Spliterator;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 2D kd-tree storing {@code City} records by coordinates.
@@ -77,25 +83,25 @@ class KDTree {
     public boolean insert(String name, int x, int y) 
     {
         Objects.requireNonNull(name, "name");
-        City rec = new City(name, x, y);
-        Result r = insertRec(root, rec, 0);
-        if (r.added) 
-        {
-            root = r.newRoot;
-            size = size + 1;
-            return true;
-        }
-        return false;
+        return insert(new City(name, x, y));
     }
 
     /**
-     * Convenience insert from an existing {@code City}.
+     * Inserts an existing {@code City}; the tree keeps that instance, so
+     * other indexes can share it.
      *
      * @param c city instance
      * @return {@code true} if inserted
      */
     public boolean insert(City c) {
-        return insert(c.getName(), c.getX(), c.getY());
+        Result r = insertRec(root, c, 0);
+        if (r.added) 
+        {
+            root = r.newRoot;
+            size = size + 1;
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -161,54 +167,413 @@ class KDTree {
      */
     public void inorderWithLevels(BiConsumer<Integer, City> visit) 
     {
-        inorderRec(root, 0, visit);
+        inorder((level, c) -> {
+            visit.accept(level, c);
+            return true;
+        });
     }
 
     /**
-     * Recursive helper for inorder traversal with levels.
+     * Preorder traversal that passes (level, city) to {@code visit}.
      *
-     * @param n     subtree root
-     * @param level current level
      * @param visit consumer receiving level and city
      */
-    private void inorderRec(
-        Node n, int level, BiConsumer<Integer, City> visit) 
+    public void preorderWithLevels(BiConsumer<Integer, City> visit) 
     {
-        if (n == null) 
+        preorder((level, c) -> {
+            visit.accept(level, c);
+            return true;
+        });
+    }
+
+    /**
+     * Inorder traversal with levels, without boxing; stops when the
+     * visitor returns false.
+     *
+     * @param visit visitor receiving level and city
+     * @return false when the visitor stopped the traversal
+     */
+    public boolean inorder(LevelVisitor<? super City> visit) 
+    {
+        return drain(inorderCursor(), visit);
+    }
+
+    /**
+     * Preorder traversal with levels, without boxing; stops when the
+     * visitor returns false.
+     *
+     * @param visit visitor receiving level and city
+     * @return false when the visitor stopped the traversal
+     */
+    public boolean preorder(LevelVisitor<? super City> visit) 
+    {
+        return drain(preorderCursor(), visit);
+    }
+
+    /**
+     * Returns an inorder cursor; invalid once the tree changes.
+     *
+     * @return the cursor
+     */
+    public LevelCursor<City> inorderCursor() 
+    {
+        return new Cursor(false, root, 0);
+    }
+
+    /**
+     * Returns a preorder cursor; invalid once the tree changes.
+     *
+     * @return the cursor
+     */
+    public LevelCursor<City> preorderCursor() 
+    {
+        return new Cursor(true, root, 0);
+    }
+
+    /**
+     * Feeds a cursor to a visitor.
+     *
+     * @param c     cursor
+     * @param visit visitor
+     * @return false when the visitor stopped
+     */
+    private static boolean drain(LevelCursor<City> c,
+        LevelVisitor<? super City> visit) 
+    {
+        while (c.advance()) 
         {
-            return;
+            if (!visit.visit(c.level(), c.item())) 
+            {
+                return false;
+            }
         }
-        inorderRec(n.left, level + 1, visit);
-        visit.accept(level, n.e);
-        inorderRec(n.right, level + 1, visit);
+        return true;
     }
 
     /**
-     * Preorder traversal that passes (level, city) to {@code visit}.
+     * Iterative traversal on an explicit stack, so unbalanced trees
+     * (e.g. from sorted input) cannot overflow the call stack.
+     */
+    private final class Cursor implements LevelCursor<City> {
+        private final boolean pre;
+        private Node[] nodes = new Node[16];
+        private int[] levels = new int[16];
+        private int top;
+        private City item;
+        private int level;
+
+        /**
+         * Creates a cursor positioned before the first node of a subtree.
+         *
+         * @param pre   true for preorder, false for inorder
+         * @param start subtree root
+         * @param lvl   level of start
+         */
+        Cursor(boolean pre, Node start, int lvl) 
+        {
+            this.pre = pre;
+            if (pre) 
+            {
+                push(start, lvl);
+            }
+            else 
+            {
+                pushLeft(start, lvl);
+            }
+        }
+
+        private void push(Node n, int lvl) 
+        {
+            if (n == null) 
+            {
+                return;
+            }
+            if (top == nodes.length) 
+            {
+                nodes = Arrays.copyOf(nodes, top * 2);
+                levels = Arrays.copyOf(levels, top * 2);
+            }
+            nodes[top] = n;
+            levels[top] = lvl;
+            top = top + 1;
+        }
+
+        private void pushLeft(Node n, int lvl) 
+        {
+            for (; n != null; n = n.left, lvl = lvl + 1) 
+            {
+                push(n, lvl);
+            }
+        }
+
+        @Override
+        public boolean advance() 
+        {
+            if (top == 0) 
+            {
+                item = null;
+                return false;
+            }
+            top = top - 1;
+            Node n = nodes[top];
+            level = levels[top];
+            nodes[top] = null;
+            item = n.e;
+            if (pre) 
+            {
+                push(n.right, level + 1);
+                push(n.left, level + 1);
+            }
+            else 
+            {
+                pushLeft(n.right, level + 1);
+            }
+            return true;
+        }
+
+        @Override
+        public int level() 
+        {
+            return level;
+        }
+
+        @Override
+        public City item() 
+        {
+            return item;
+        }
+    }
+
+    // ------------------------------ Streams ------------------------------
+    /**
+     * Sequential stream of the cities in inorder order.
      *
-     * @param visit consumer receiving level and city
+     * @return the stream; the tree must not change while it runs
      */
-    public void preorderWithLevels(BiConsumer<Integer, City> visit) 
+    public Stream<City> stream() 
     {
-        preorderRec(root, 0, visit);
+        return StreamSupport.stream(spliterator(), false);
     }
 
     /**
-     * Recursive helper for preorder traversal with levels.
+     * Parallel stream of the cities; see {@link #spliterator()}.
      *
-     * @param n     subtree root
-     * @param level current level
-     * @param visit consumer receiving level and city
+     * @return the stream; the tree must not change while it runs
+     */
+    public Stream<City> parallelStream() 
+    {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Spliterator over the cities in inorder order. Nodes keep no
+     * subtree sizes, so only the unsplit spliterator is SIZED. A split
+     * opens a subtree into (left, node, right) and cuts between the two
+     * subtrees, so every part keeps a whole subtree and no part is a
+     * lone node unless nothing else is left.
+     *
+     * @return the spliterator
      */
-    private void preorderRec(
-        Node n, int level, BiConsumer<Integer, City> visit) 
+    public Spliterator<City> spliterator() 
     {
-        if (n == null) {
-            return;
+        return new Splitr(new Node[] { root }, new boolean[1], 0,
+            (root == null) ? 0 : 1, size, true);
+    }
+
+    /**
+     * Inorder pieces [lo, hi) of pieces[]: a whole subtree, or a single
+     * node when alone[i] is set. The arrays are shared read-only between
+     * the halves of a split.
+     */
+    private final class Splitr implements Spliterator<City> {
+        private Node[] pieces;
+        private boolean[] alone;
+        private int lo;
+        private int hi;
+        private long est;
+        private boolean sized;
+        private Cursor cur;
+
+        /**
+         * Creates a spliterator over pieces [lo, hi).
+         *
+         * @param pieces subtree roots or single nodes
+         * @param alone  marks the single nodes
+         * @param lo     first piece
+         * @param hi     end of the pieces
+         * @param est    estimated number of cities
+         * @param sized  whether est is exact
+         */
+        Splitr(Node[] pieces, boolean[] alone, int lo, int hi, long est,
+            boolean sized) 
+        {
+            this.pieces = pieces;
+            this.alone = alone;
+            this.lo = lo;
+            this.hi = hi;
+            this.est = est;
+            this.sized = sized;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super City> action) 
+        {
+            while (cur == null || !cur.advance()) 
+            {
+                cur = null;
+                if (lo == hi) 
+                {
+                    return false;
+                }
+                Node n = pieces[lo];
+                if (alone[lo++]) 
+                {
+                    emit(n.e, action);
+                    return true;
+                }
+                cur = new Cursor(false, n, 0);
+            }
+            emit(cur.item(), action);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super City> action) 
+        {
+            if (cur != null) 
+            {
+                while (cur.advance()) 
+                {
+                    action.accept(cur.item());
+                }
+                cur = null;
+            }
+            for (; lo < hi; lo++) 
+            {
+                if (alone[lo]) 
+                {
+                    action.accept(pieces[lo].e);
+                    continue;
+                }
+                Cursor c = new Cursor(false, pieces[lo], 0);
+                while (c.advance()) 
+                {
+                    action.accept(c.item());
+                }
+            }
+            est = 0;
+        }
+
+        /**
+         * Passes one city on and counts it off the estimate.
+         *
+         * @param c      the city
+         * @param action receiver
+         */
+        private void emit(City c, Consumer<? super City> action) 
+        {
+            if (est > 0) 
+            {
+                est = est - 1;
+            }
+            action.accept(c);
+        }
+
+        @Override
+        public Spliterator<City> trySplit() 
+        {
+            if (cur != null) 
+            {
+                return null;
+            }
+            // open the only subtree until there are two to divide
+            int first = -1;
+            int second = -1;
+            while (second < 0) 
+            {
+                first = -1;
+                for (int i = lo; i < hi && second < 0; i++) 
+                {
+                    if (!alone[i]) 
+                    {
+                        if (first < 0) 
+                        {
+                            first = i;
+                        }
+                        else 
+                        {
+                            second = i;
+                        }
+                    }
+                }
+                if (first < 0) 
+                {
+                    return null;
+                }
+                if (second < 0) 
+                {
+                    open(first);
+                }
+            }
+            long half = est >>> 1;
+            Splitr prefix = new Splitr(pieces, alone, lo, second, half, false);
+            lo = second;
+            est = est - half;
+            sized = false;
+            return prefix;
+        }
+
+        /**
+         * Replaces the subtree piece i by its left subtree, its root as a
+         * single node, and its right subtree; a leaf just becomes single.
+         *
+         * @param i index of a subtree piece
+         */
+        private void open(int i) 
+        {
+            Node n = pieces[i];
+            Node[] p = new Node[hi - lo + 2];
+            boolean[] a = new boolean[p.length];
+            int k = 0;
+            for (int j = lo; j < i; j++, k++) 
+            {
+                p[k] = pieces[j];
+                a[k] = alone[j];
+            }
+            if (n.left != null) 
+            {
+                p[k++] = n.left;
+            }
+            a[k] = true;
+            p[k++] = n;
+            if (n.right != null) 
+            {
+                p[k++] = n.right;
+            }
+            for (int j = i + 1; j < hi; j++, k++) 
+            {
+                p[k] = pieces[j];
+                a[k] = alone[j];
+            }
+            pieces = p;
+            alone = a;
+            lo = 0;
+            hi = k;
+        }
+
+        @Override
+        public long estimateSize() 
+        {
+            return est;
+        }
+
+        @Override
+        public int characteristics() 
+        {
+            return sized
+                ? ORDERED | NONNULL | SIZED
+                : ORDERED | NONNULL;
         }
-        visit.accept(level, n.e);
-        preorderRec(n.left, level + 1, visit);
-        preorderRec(n.right, level + 1, visit);
     }
 
     // ------------------ Exact Find, Delete, Range Search ------------------
@@ -492,16 +857,40 @@ class KDTree {
         {
             return new SearchOutcome(0, "");
         }
-        StringBuilder sb = new StringBuilder();
+        OutputEncoder enc = new OutputEncoder();
+        int visited;
+        try {
+            visited = rangeSearch(cx, cy, radius, enc);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);     // no sink, nothing thrown
+        }
+        return new SearchOutcome(visited, enc.toString());
+    }
+
+    /**
+     * Writes the cities within {@code radius} of ({@code cx},{@code cy})
+     * to an encoder, one "name (x, y)" line each, in the order
+     * {@link #rangeSearch(int, int, int)} lists them.
+     *
+     * @param cx     center x
+     * @param cy     center y
+     * @param radius query radius
+     * @param out    receives the listing
+     * @return number of nodes visited
+     * @throws IOException from the encoder's sink
+     */
+    public int rangeSearch(int cx, int cy, int radius, OutputEncoder out)
+        throws IOException {
+        if (root == null) return 0;
         Counter c = new Counter();
         long r2 = (long) radius * (long) radius;
 
         rangeRec(root, 0,
                  Integer.MIN_VALUE, Integer.MIN_VALUE,
                  Integer.MAX_VALUE, Integer.MAX_VALUE,
-                 cx, cy, r2, sb, c);
-
-        return new SearchOutcome(c.count, sb.toString());
+                 cx, cy, r2, out, c);
+        return c.count;
     }
 
     /**
@@ -516,14 +905,15 @@ class KDTree {
      * @param cx    center x
      * @param cy    center y
      * @param r2    radius squared
-     * @param out   result builder
+     * @param out   result encoder
      * @param c     visit counter
+     * @throws IOException from the encoder's sink
      */
     private void rangeRec(
         Node n, int depth,
         int minX, int minY, int maxX, int maxY,
         int cx, int cy, long r2,
-        StringBuilder out, Counter c) {
+        OutputEncoder out, Counter c) throws IOException {
         if (n == null) return;
         c.count = c.count + 1;
 
@@ -531,9 +921,8 @@ class KDTree {
         long dy = (long) n.e.getY() - (long) cy;
         long d2 = dx * dx + dy * dy;
         if (d2 <= r2) {
-            out.append(n.e.getName()).append(" (")
-               .append(n.e.getX()).append(", ")
-               .append(n.e.getY()).append(")\n");
+            out.cityLine(n.e);
+            out.flushIfFull();
         }
 
         boolean splitOnX = (depth % 2 == 0);
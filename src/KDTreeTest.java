@@ -1,3 +1,9 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 import student.TestCase;
 
 /**
@@ -1252,12 +1258,69 @@ public class KDTreeTest extends TestCase {
         assertTrue("expected depth-1 replacement with coords "
             + "(-2,6); got\n" + view, sawBAtLevel1);
     }
-    
-    
-    
 
-    
-    
+    /**
+     * The visitor and cursor forms list the same nodes as the BiConsumer
+     * traversals, preorder levels follow the split rules, and a visitor
+     * can stop early.
+     */
+    public void testLevelVisitorAndCursor() {
+        kd.insert("A", 50, 50);
+        kd.insert("B", 20, 70);
+        kd.insert("C", 80, 10);
+        kd.insert("D", 10, 60);
+        kd.insert("E", 30, 90);
+        List<String> pre = new ArrayList<>();
+        assertTrue(kd.preorder((lvl, c) -> pre.add(lvl + " " + c.getName())));
+        assertEquals(Arrays.asList("0 A", "1 B", "2 D", "2 E", "1 C"), pre);
+        List<String> in = new ArrayList<>();
+        kd.inorderWithLevels((lvl, c) -> in.add(lvl + " " + c.getName()));
+        assertEquals(Arrays.asList("2 D", "1 B", "2 E", "0 A", "1 C"), in);
+        List<String> cur = new ArrayList<>();
+        LevelCursor<City> c = kd.inorderCursor();
+        while (c.advance()) {
+            cur.add(c.level() + " " + c.item().getName());
+        }
+        assertEquals(in, cur);
+        int[] calls = new int[1];
+        assertFalse(kd.inorder((lvl, x) -> ++calls[0] < 2));
+        assertEquals(2, calls[0]);
+        kd.clear();
+        assertFalse(kd.preorderCursor().advance());
+        assertTrue(kd.inorder((lvl, x) -> false));
+    }
 
+    /**
+     * Streams cover every city once in inorder order; only the unsplit
+     * spliterator reports an exact size.
+     */
+    public void testStreams() {
+        Random r = new Random(47);
+        for (int i = 0; i < 3000; i++) {
+            kd.insert("P" + i, r.nextInt(1 << 14), r.nextInt(1 << 14));
+        }
+        List<City> all = new ArrayList<>();
+        kd.inorderWithLevels((lvl, c) -> all.add(c));
+        assertEquals(all, kd.stream().collect(Collectors.toList()));
+        assertEquals(all, kd.parallelStream().collect(Collectors.toList()));
+        assertEquals(all.stream().mapToLong(City::getX).sum(),
+            kd.parallelStream().mapToLong(City::getX).sum());
+
+        Spliterator<City> a = kd.spliterator();
+        assertEquals(all.size(), a.getExactSizeIfKnown());
+        Spliterator<City> b = a.trySplit();
+        assertNotNull(b);
+        assertEquals(-1, a.getExactSizeIfKnown());
+        assertEquals(-1, b.getExactSizeIfKnown());
+        List<City> parts = new ArrayList<>();
+        while (b.tryAdvance(parts::add)) {
+            assertNull(b.trySplit());
+        }
+        a.forEachRemaining(parts::add);
+        assertEquals(all, parts);
 
+        kd.clear();
+        assertEquals(0, kd.stream().count());
+        assertNull(kd.spliterator().trySplit());
+    }
 }
@@ -0,0 +1,35 @@
+/**
+ * Pull-style tree traversal: call {@link #advance()}, then read
+ * {@link #level()} and {@link #item()}. The caller drives the loop, so it
+ * can stop, interleave two trees or keep its own state without a lambda.
+ * A cursor is invalid once its tree is modified.
+ *
+ * @param <T> item type
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+interface LevelCursor<T> {
+
+    /**
+     * Moves to the next node.
+     *
+     * @return false when the traversal is finished
+     */
+    boolean advance();
+
+    /**
+     * Returns the level of the current node.
+     *
+     * @return level (root = 0)
+     */
+    int level();
+
+    /**
+     * Returns the item of the current node.
+     *
+     * @return the item
+     */
+    T item();
+}
@@ -0,0 +1,21 @@
+/**
+ * Receives (level, item) pairs from a tree traversal. The level is an int,
+ * so nothing is boxed per node, and returning false stops the traversal.
+ *
+ * @param <T> item type
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+interface LevelVisitor<T> {
+
+    /**
+     * Visits one node.
+     *
+     * @param level level of the node (root = 0)
+     * @param item  the node's item
+     * @return true to continue, false to stop the traversal
+     */
+    boolean visit(int level, T item);
+}
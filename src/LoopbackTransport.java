@@ -0,0 +1,48 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-process transport that hands every batch straight to attached replicas.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class LoopbackTransport implements ReplicationLog.Transport {
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private boolean shipped;
+
+    /**
+     * Attaches a replica. Replicas start empty and only see batches
+     * shipped after this call, so they must attach before the first one.
+     *
+     * @param r replica to feed
+     * @throws IllegalStateException if a batch was already shipped
+     */
+    public synchronized void attach(Replica r) {
+        if (shipped) {
+            throw new IllegalStateException(
+                "replica attached after shipping started");
+        }
+        replicas.add(r);
+    }
+
+    /**
+     * Stops feeding a replica.
+     *
+     * @param r replica to drop
+     * @return true if it was attached
+     */
+    public synchronized boolean detach(Replica r) {
+        return replicas.remove(r);
+    }
+
+    /** {@inheritDoc} */
+    public synchronized void ship(ReplicationLog.Batch b) {
+        shipped = true;
+        for (Replica r : replicas) {
+            r.receive(b);
+        }
+    }
+}
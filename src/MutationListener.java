@@ -0,0 +1,50 @@
+/**
+ * Callback notified by {@link GISDB} after each successful mutation.
+ * Deletes by name report one {@code deleted} call per removed city,
+ * in the same (x, y) order the delete output uses.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+interface MutationListener {
+
+    /**
+     * Called on the mutating thread before a mutation takes the database's
+     * write lock, whether or not it goes on to change anything. It may
+     * block to hold the writer back; by default it returns at once.
+     */
+    default void beforeMutation() {
+    }
+
+    /**
+     * A city was added to both indexes.
+     *
+     * @param c the inserted city
+     */
+    void inserted(City c);
+
+    /**
+     * Cities were added by one {@link GISDB#bulkLoad}, in row order. By
+     * default each is reported through {@link #inserted}.
+     *
+     * @param cities the inserted cities
+     */
+    default void bulkLoaded(City[] cities) {
+        for (City c : cities) {
+            inserted(c);
+        }
+    }
+
+    /**
+     * A city was removed from both indexes.
+     *
+     * @param c the removed city
+     */
+    void deleted(City c);
+
+    /**
+     * The database was reinitialized.
+     */
+    void cleared();
+}
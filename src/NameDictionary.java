@@ -0,0 +1,208 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionary of distinct city names. Each name gets a small int id that
+ * stays the same while at least one city uses it, and one canonical String
+ * that every City with that name shares. Ids are reference counted; an id
+ * whose last city is gone is recycled. Open addressing over ids with
+ * linear probing and backward-shift deletion. Non-ASCII names also keep
+ * their UTF-8 bytes, encoded once at intern, for {@link OutputEncoder}.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class NameDictionary {
+
+    private int[] slots = new int[16];      // id + 1, 0 = empty
+    private String[] byId = new String[16];
+    private int[] hashes = new int[16];
+    private int[] refs = new int[16];
+    private byte[][] utf8 = new byte[16][];   // null for ASCII names
+    private int[] free = new int[16];       // recycled ids
+    private int freeCount;
+    private int nextId;
+    private int live;
+
+    /**
+     * Returns the id of a name, adding it if new, and takes one reference.
+     *
+     * @param name the name
+     * @return its id
+     */
+    public int intern(String name) {
+        int h = mix(name.hashCode());
+        int mask = slots.length - 1;
+        int i = h & mask;
+        while (slots[i] != 0) {
+            int id = slots[i] - 1;
+            if (hashes[id] == h && byId[id].equals(name)) {
+                refs[id] = refs[id] + 1;
+                return id;
+            }
+            i = (i + 1) & mask;
+        }
+        int id = (freeCount > 0) ? free[--freeCount] : nextId++;
+        if (id == byId.length) {
+            int cap = id * 2;
+            byId = Arrays.copyOf(byId, cap);
+            hashes = Arrays.copyOf(hashes, cap);
+            refs = Arrays.copyOf(refs, cap);
+            utf8 = Arrays.copyOf(utf8, cap);
+        }
+        byId[id] = name;
+        utf8[id] = isAscii(name) ? null
+            : name.getBytes(StandardCharsets.UTF_8);
+        hashes[id] = h;
+        refs[id] = 1;
+        slots[i] = id + 1;
+        live = live + 1;
+        if (live * 4 > slots.length * 3) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * Drops one reference; the id is recycled when none are left.
+     *
+     * @param id a live id
+     */
+    public void release(int id) {
+        refs[id] = refs[id] - 1;
+        if (refs[id] > 0) return;
+        int mask = slots.length - 1;
+        int i = hashes[id] & mask;
+        while (slots[i] != id + 1) {
+            i = (i + 1) & mask;
+        }
+        // backward-shift delete
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (slots[j] == 0) break;
+            int home = hashes[slots[j] - 1] & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                slots[i] = slots[j];
+                i = j;
+            }
+        }
+        slots[i] = 0;
+        byId[id] = null;
+        utf8[id] = null;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = id;
+        live = live - 1;
+    }
+
+    /**
+     * Returns the id of a name without adding it.
+     *
+     * @param name the name
+     * @return its id, or -1 when absent
+     */
+    public int id(String name) {
+        int h = mix(name.hashCode());
+        int mask = slots.length - 1;
+        int i = h & mask;
+        while (slots[i] != 0) {
+            int id = slots[i] - 1;
+            if (hashes[id] == h && byId[id].equals(name)) {
+                return id;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the canonical String of an id.
+     *
+     * @param id a live id
+     * @return the name
+     */
+    public String name(int id) {
+        return byId[id];
+    }
+
+    /**
+     * Returns the UTF-8 bytes of a non-ASCII name, when it is the
+     * canonical String of the id. Callers must not modify the array.
+     *
+     * @param id   an id
+     * @param name the String the caller holds for it
+     * @return the bytes, or null for an ASCII name, a free id, or a
+     *         different String
+     */
+    public byte[] utf8(int id, String name) {
+        if (id < 0 || id >= nextId || byId[id] != name) return null;
+        return utf8[id];
+    }
+
+    /**
+     * Returns how many cities use an id.
+     *
+     * @param id an id
+     * @return reference count (0 when free)
+     */
+    public int refs(int id) {
+        return (id < 0 || id >= nextId || byId[id] == null) ? 0 : refs[id];
+    }
+
+    /**
+     * Returns the number of live names.
+     *
+     * @return distinct name count
+     */
+    public int size() {
+        return live;
+    }
+
+    /**
+     * Returns one past the largest id handed out; ids are below it.
+     *
+     * @return id bound
+     */
+    public int idBound() {
+        return nextId;
+    }
+
+    /** Removes every name; ids start from 0 again. */
+    public void clear() {
+        Arrays.fill(slots, 0);
+        Arrays.fill(byId, 0, nextId, null);
+        Arrays.fill(utf8, 0, nextId, null);
+        freeCount = 0;
+        nextId = 0;
+        live = 0;
+    }
+
+    private void rehash(int cap) {
+        int[] fresh = new int[cap];
+        int mask = cap - 1;
+        for (int s : slots) {
+            if (s == 0) continue;
+            int i = hashes[s - 1] & mask;
+            while (fresh[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            fresh[i] = s;
+        }
+        slots = fresh;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    private static int mix(int h) {
+        h = h * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,108 @@
+import student.TestCase;
+
+/**
+ * Tests the reference-counted name dictionary.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+public class NameDictionaryTest extends TestCase {
+
+    /**
+     * Equal names share one id and one canonical String.
+     */
+    public void testInternSharesIdAndString() {
+        NameDictionary d = new NameDictionary();
+        int a = d.intern(new String("Blacksburg"));
+        int b = d.intern(new String("Blacksburg"));
+        int c = d.intern("Roanoke");
+        assertEquals(a, b);
+        assertFalse(a == c);
+        assertEquals(2, d.refs(a));
+        assertEquals(2, d.size());
+        assertSame(d.name(a), d.name(b));
+        assertEquals(a, d.id("Blacksburg"));
+        assertEquals(-1, d.id("Richmond"));
+    }
+
+    /**
+     * Ids live until the last reference goes, then get recycled.
+     */
+    public void testReleaseRecyclesIds() {
+        NameDictionary d = new NameDictionary();
+        int a = d.intern("A");
+        d.intern("A");
+        int b = d.intern("B");
+        d.release(a);
+        assertEquals(a, d.id("A"));
+        d.release(a);
+        assertEquals(-1, d.id("A"));
+        assertEquals(0, d.refs(a));
+        assertEquals(b, d.id("B"));
+        assertEquals(a, d.intern("C"));
+        assertEquals(2, d.size());
+        assertEquals(2, d.idBound());
+        d.clear();
+        assertEquals(0, d.size());
+        assertEquals(-1, d.id("B"));
+        assertEquals(0, d.intern("Z"));
+    }
+
+    /**
+     * Non-ASCII names keep their UTF-8 bytes while the id is live, and
+     * only for the canonical String.
+     */
+    public void testUtf8Bytes() {
+        NameDictionary d = new NameDictionary();
+        int a = d.intern("Ames");
+        int k = d.intern(new String("Köln"));
+        String koln = d.name(k);
+        assertNull(d.utf8(a, d.name(a)));
+        assertEquals("Köln", new String(d.utf8(k, koln),
+            java.nio.charset.StandardCharsets.UTF_8));
+        assertNull(d.utf8(k, new String("Köln")));
+        assertNull(d.utf8(-1, koln));
+        assertNull(d.utf8(99, koln));
+        d.release(k);
+        assertNull(d.utf8(k, koln));
+        k = d.intern("Köln");
+        d.clear();
+        assertNull(d.utf8(k, "Köln"));
+    }
+
+    /**
+     * Many names with churn stay consistent across rehashes and
+     * backward-shift deletes.
+     */
+    public void testChurnAgainstHashMap() {
+        NameDictionary d = new NameDictionary();
+        java.util.Map<String, Integer> refs = new java.util.HashMap<>();
+        java.util.Map<String, Integer> ids = new java.util.HashMap<>();
+        java.util.Random rnd = new java.util.Random(39);
+        for (int i = 0; i < 50000; i++) {
+            String name = "N" + rnd.nextInt(3000);
+            if (rnd.nextInt(3) > 0 || !refs.containsKey(name)) {
+                int id = d.intern(name);
+                if (ids.containsKey(name)) {
+                    assertEquals((int) ids.get(name), id);
+                }
+                ids.put(name, id);
+                refs.merge(name, 1, Integer::sum);
+            }
+            else {
+                d.release(ids.get(name));
+                if (refs.merge(name, -1, Integer::sum) == 0) {
+                    refs.remove(name);
+                    ids.remove(name);
+                }
+            }
+        }
+        assertEquals(refs.size(), d.size());
+        for (java.util.Map.Entry<String, Integer> e : ids.entrySet()) {
+            assertEquals((int) e.getValue(), d.id(e.getKey()));
+            assertEquals((int) refs.get(e.getKey()), d.refs(e.getValue()));
+            assertEquals(e.getKey(), d.name(e.getValue()));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import java.util.Arrays;
+
+/**
+ * Per-name city counts kept in count buckets, so increments, decrements
+ * and top-k queries never sort the whole set. Names are
+ * {@link NameDictionary} ids. Each bucket holds the ids with one count in
+ * an intrusive doubly linked list, and buckets are linked in count order;
+ * moving an id up or down one count is O(1), and the k most common names
+ * are read from the top bucket down in O(k) plus O(k log k) to order the
+ * answer.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class NameFrequency {
+
+    /** Ids with one count. */
+    private static final class Bucket {
+        final int count;
+        int head = -1;
+        Bucket up;          // next larger count
+        Bucket down;        // next smaller count
+        Bucket(int count) { this.count = count; }
+    }
+
+    private Bucket[] bucketOf = new Bucket[16];
+    private int[] next = new int[16];
+    private int[] prev = new int[16];
+    private Bucket top;         // largest count
+    private Bucket bottom;      // smallest count
+    private int distinct;
+
+    /**
+     * Adds one city to a name.
+     *
+     * @param id dictionary id
+     */
+    public void inc(int id) {
+        if (id >= bucketOf.length) {
+            int cap = Math.max(id + 1, bucketOf.length * 2);
+            bucketOf = Arrays.copyOf(bucketOf, cap);
+            next = Arrays.copyOf(next, cap);
+            prev = Arrays.copyOf(prev, cap);
+        }
+        Bucket from = bucketOf[id];
+        Bucket to;
+        if (from == null) {
+            distinct = distinct + 1;
+            to = (bottom != null && bottom.count == 1) ? bottom
+                : link(new Bucket(1), null, bottom);
+        }
+        else {
+            to = (from.up != null && from.up.count == from.count + 1)
+                ? from.up : link(new Bucket(from.count + 1), from, from.up);
+            unlink(id, from);
+        }
+        push(id, to);
+    }
+
+    /**
+     * Removes one city from a name that has at least one.
+     *
+     * @param id dictionary id
+     */
+    public void dec(int id) {
+        Bucket from = bucketOf[id];
+        Bucket to = null;
+        if (from.count == 1) {
+            distinct = distinct - 1;
+        }
+        else {
+            to = (from.down != null && from.down.count == from.count - 1)
+                ? from.down
+                : link(new Bucket(from.count - 1), from.down, from);
+        }
+        unlink(id, from);
+        bucketOf[id] = null;
+        if (to != null) {
+            push(id, to);
+        }
+    }
+
+    /**
+     * Returns the count of a name.
+     *
+     * @param id dictionary id
+     * @return number of cities with that name
+     */
+    public int count(int id) {
+        return (id < bucketOf.length && bucketOf[id] != null)
+            ? bucketOf[id].count : 0;
+    }
+
+    /**
+     * Returns the number of names with at least one city.
+     *
+     * @return distinct name count
+     */
+    public int distinct() {
+        return distinct;
+    }
+
+    /**
+     * Returns the ids of the k most common names, most common first; ties
+     * in id order. When several names share the count at the cut-off,
+     * which of them make the list is unspecified.
+     *
+     * @param k how many
+     * @return up to k ids
+     */
+    public int[] top(int k) {
+        k = Math.max(0, Math.min(k, distinct));
+        long[] keys = new long[k];
+        int n = 0;
+        for (Bucket b = top; b != null && n < k; b = b.down) {
+            for (int id = b.head; id >= 0 && n < k; id = next[id]) {
+                // larger counts sort first, then smaller ids
+                keys[n++] = ((long) (Integer.MAX_VALUE - b.count) << 32) | id;
+            }
+        }
+        Arrays.sort(keys, 0, n);
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = (int) keys[i];
+        }
+        return ids;
+    }
+
+    /** Removes every count. */
+    public void clear() {
+        Arrays.fill(bucketOf, null);
+        top = null;
+        bottom = null;
+        distinct = 0;
+    }
+
+    // inserts b between lower and upper, returns b
+    private Bucket link(Bucket b, Bucket lower, Bucket upper) {
+        b.down = lower;
+        b.up = upper;
+        if (lower != null) lower.up = b; else bottom = b;
+        if (upper != null) upper.down = b; else top = b;
+        return b;
+    }
+
+    private void push(int id, Bucket b) {
+        bucketOf[id] = b;
+        prev[id] = -1;
+        next[id] = b.head;
+        if (b.head >= 0) {
+            prev[b.head] = id;
+        }
+        b.head = id;
+    }
+
+    // takes id out of b and drops b when it empties
+    private void unlink(int id, Bucket b) {
+        if (prev[id] >= 0) next[prev[id]] = next[id]; else b.head = next[id];
+        if (next[id] >= 0) prev[next[id]] = prev[id];
+        if (b.head < 0) {
+            if (b.down != null) b.down.up = b.up; else bottom = b.up;
+            if (b.up != null) b.up.down = b.down; else top = b.down;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import student.TestCase;
+
+/**
+ * Tests the bucketed name counts.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+public class NameFrequencyTest extends TestCase {
+
+    /**
+     * Counts and top-k match a recount after random churn.
+     */
+    public void testAgainstRecount() {
+        NameFrequency f = new NameFrequency();
+        int[] counts = new int[500];
+        java.util.Random rnd = new java.util.Random(42);
+        for (int step = 0; step < 100000; step++) {
+            // skewed ids so a few names get large counts
+            int id = (int) Math.min(counts.length - 1,
+                Math.abs(rnd.nextGaussian()) * 60);
+            if (counts[id] > 0 && rnd.nextInt(5) < 2) {
+                f.dec(id);
+                counts[id] = counts[id] - 1;
+            }
+            else {
+                f.inc(id);
+                counts[id] = counts[id] + 1;
+            }
+        }
+        int distinct = 0;
+        for (int id = 0; id < counts.length; id++) {
+            assertEquals(counts[id], f.count(id));
+            distinct = distinct + (counts[id] > 0 ? 1 : 0);
+        }
+        assertEquals(distinct, f.distinct());
+        Integer[] sorted = new Integer[counts.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = counts[i];
+        }
+        java.util.Arrays.sort(sorted, java.util.Collections.reverseOrder());
+        int[] top = f.top(50);
+        assertEquals(50, top.length);
+        for (int i = 0; i < top.length; i++) {
+            assertEquals((int) sorted[i], counts[top[i]]);
+            if (i > 0 && counts[top[i]] == counts[top[i - 1]]) {
+                assertTrue(top[i - 1] < top[i]);
+            }
+        }
+        assertEquals(distinct, f.top(100000).length);
+    }
+
+    /**
+     * Buckets empty out and clear() resets.
+     */
+    public void testEmptyAndClear() {
+        NameFrequency f = new NameFrequency();
+        assertEquals(0, f.top(5).length);
+        f.inc(3);
+        f.inc(3);
+        f.inc(40);
+        assertEquals(2, f.distinct());
+        assertEquals(3, f.top(1)[0]);
+        f.dec(3);
+        f.dec(3);
+        assertEquals(0, f.count(3));
+        assertEquals(1, f.distinct());
+        assertEquals(40, f.top(5)[0]);
+        f.clear();
+        assertEquals(0, f.distinct());
+        assertEquals(0, f.count(40));
+        assertEquals(0, f.top(5).length);
+        f.inc(1);
+        assertEquals(1, f.top(5).length);
+    }
+}
@@ -0,0 +1,256 @@
+import java.util.Arrays;
+
+/**
+ * Hash multimap from city name to the coordinates of every city with that
+ * name. Coordinates are packed into one int ({@code x << 16 | y}, both fit
+ * in 15 bits), so a name costs one table slot plus an int array, with no
+ * per-city objects. Lists keep insertion order, which is the order
+ * {@link GISDB#info(String)} reports. Open addressing with linear probing
+ * and backward-shift deletion.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class NameMultimap {
+
+    private static final int[] EMPTY = new int[0];
+
+    private String[] keys = new String[16];
+    private int[][] coords = new int[16][];
+    private int[] counts = new int[16];
+    private int names;
+    private int entries;
+
+    /**
+     * Packs a coordinate pair.
+     *
+     * @param x x coordinate (0..32767)
+     * @param y y coordinate (0..32767)
+     * @return packed value; packed values sort in (x, y) order
+     */
+    static int pack(int x, int y) {
+        return (x << 16) | y;
+    }
+
+    /**
+     * Returns the x coordinate of a packed value.
+     *
+     * @param p packed value
+     * @return x coordinate
+     */
+    static int unpackX(int p) {
+        return p >>> 16;
+    }
+
+    /**
+     * Returns the y coordinate of a packed value.
+     *
+     * @param p packed value
+     * @return y coordinate
+     */
+    static int unpackY(int p) {
+        return p & 0xFFFF;
+    }
+
+    /** Removes everything. */
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(coords, null);
+        Arrays.fill(counts, 0);
+        names = 0;
+        entries = 0;
+    }
+
+    /**
+     * Returns the number of distinct names.
+     *
+     * @return distinct name count
+     */
+    public int names() {
+        return names;
+    }
+
+    /**
+     * Returns the number of (name, x, y) entries.
+     *
+     * @return entry count
+     */
+    public int size() {
+        return entries;
+    }
+
+    private int slot(String name) {
+        int mask = keys.length - 1;
+        int h = name.hashCode();
+        int i = (h ^ (h >>> 16)) & mask;
+        while (keys[i] != null && !keys[i].equals(name)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Appends a coordinate to the name's list.
+     *
+     * @param name city name
+     * @param x    x coordinate
+     * @param y    y coordinate
+     */
+    public void add(String name, int x, int y) {
+        int i = slot(name);
+        if (keys[i] == null) {
+            if (2 * (names + 1) > keys.length) {
+                grow();
+                i = slot(name);
+            }
+            keys[i] = name;
+            coords[i] = new int[2];
+            names = names + 1;
+        }
+        int[] list = coords[i];
+        if (counts[i] == list.length) {
+            list = Arrays.copyOf(list, list.length * 2);
+            coords[i] = list;
+        }
+        list[counts[i]] = pack(x, y);
+        counts[i] = counts[i] + 1;
+        entries = entries + 1;
+    }
+
+    /**
+     * Removes one coordinate from the name's list, keeping the rest in order.
+     *
+     * @param name city name
+     * @param x    x coordinate
+     * @param y    y coordinate
+     * @return true if it was present
+     */
+    public boolean remove(String name, int x, int y) {
+        int i = slot(name);
+        if (keys[i] == null) return false;
+        int[] list = coords[i];
+        int n = counts[i];
+        int p = pack(x, y);
+        for (int k = 0; k < n; k++) {
+            if (list[k] == p) {
+                System.arraycopy(list, k + 1, list, k, n - k - 1);
+                counts[i] = n - 1;
+                entries = entries - 1;
+                if (n == 1) {
+                    deleteSlot(i);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes a name and all its coordinates in O(count).
+     *
+     * @param name city name
+     * @return the packed coordinates it had, in insertion order (empty
+     *         when the name is absent)
+     */
+    public int[] removeAll(String name) {
+        int i = slot(name);
+        if (keys[i] == null) return EMPTY;
+        int[] list = Arrays.copyOf(coords[i], counts[i]);
+        entries = entries - counts[i];
+        deleteSlot(i);
+        return list;
+    }
+
+    /**
+     * Returns the packed coordinates for a name, in insertion order.
+     *
+     * @param name city name
+     * @return a fresh array (empty when the name is absent)
+     */
+    public int[] get(String name) {
+        int i = slot(name);
+        if (keys[i] == null) return EMPTY;
+        return Arrays.copyOf(coords[i], counts[i]);
+    }
+
+    /**
+     * Returns how many cities have the name.
+     *
+     * @param name city name
+     * @return count (0 when absent)
+     */
+    public int count(String name) {
+        int i = slot(name);
+        return (keys[i] == null) ? 0 : counts[i];
+    }
+
+    /**
+     * Visits each distinct name once, in table order.
+     *
+     * @param visit receives each name
+     */
+    public void forEachName(java.util.function.Consumer<String> visit) {
+        for (String k : keys) {
+            if (k != null) visit.accept(k);
+        }
+    }
+
+    /**
+     * Rough heap footprint of the table and lists, assuming compressed
+     * references (12-byte array headers rounded to 16). Name strings are
+     * shared with the indexes and not counted.
+     *
+     * @return estimated bytes
+     */
+    public long estimatedBytes() {
+        long b = 3L * (16 + 4L * keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            if (coords[i] != null) {
+                b += 16 + 4L * coords[i].length;
+            }
+        }
+        return b;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[][] oldCoords = coords;
+        int[] oldCounts = counts;
+        int cap = oldKeys.length * 2;
+        keys = new String[cap];
+        coords = new int[cap][];
+        counts = new int[cap];
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = slot(oldKeys[j]);
+                keys[i] = oldKeys[j];
+                coords[i] = oldCoords[j];
+                counts[i] = oldCounts[j];
+            }
+        }
+    }
+
+    /** Backward-shift deletion keeps probe chains intact without tombstones. */
+    private void deleteSlot(int hole) {
+        int mask = keys.length - 1;
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (keys[i] == null) break;
+            int h = keys[i].hashCode();
+            int home = (h ^ (h >>> 16)) & mask;
+            // move keys[i] into the hole if its home is not in (hole, i]
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                coords[hole] = coords[i];
+                counts[hole] = counts[i];
+                hole = i;
+            }
+        }
+        keys[hole] = null;
+        coords[hole] = null;
+        counts[hole] = 0;
+        names = names - 1;
+    }
+}
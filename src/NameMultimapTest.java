@@ -0,0 +1,92 @@
+import student.TestCase;
+
+/**
+ * Tests the name to packed-coordinates multimap.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+public class NameMultimapTest extends TestCase {
+
+    /**
+     * Packing round-trips and sorts in (x, y) order.
+     */
+    public void testPack() {
+        int p = NameMultimap.pack(32767, 5);
+        assertEquals(32767, NameMultimap.unpackX(p));
+        assertEquals(5, NameMultimap.unpackY(p));
+        assertTrue(NameMultimap.pack(1, 32767) < NameMultimap.pack(2, 0));
+        assertTrue(NameMultimap.pack(1, 2) < NameMultimap.pack(1, 3));
+    }
+
+    /**
+     * Lists keep insertion order through removals.
+     */
+    public void testAddRemoveKeepsOrder() {
+        NameMultimap m = new NameMultimap();
+        m.add("A", 1, 1);
+        m.add("A", 2, 2);
+        m.add("A", 3, 3);
+        m.add("B", 9, 9);
+        assertEquals(2, m.names());
+        assertEquals(4, m.size());
+        assertTrue(m.remove("A", 2, 2));
+        assertFalse(m.remove("A", 2, 2));
+        assertFalse(m.remove("Z", 1, 1));
+        int[] a = m.get("A");
+        assertEquals(2, a.length);
+        assertEquals(NameMultimap.pack(1, 1), a[0]);
+        assertEquals(NameMultimap.pack(3, 3), a[1]);
+        assertEquals(0, m.get("Z").length);
+        assertEquals(1, m.count("B"));
+        assertTrue(m.remove("B", 9, 9));
+        assertEquals(1, m.names());
+        assertEquals(0, m.count("B"));
+        m.clear();
+        assertEquals(0, m.size());
+        assertEquals(0, m.count("A"));
+    }
+
+    /**
+     * removeAll drops a name with all its coordinates and returns them in
+     * insertion order; other names stay findable.
+     */
+    public void testRemoveAll() {
+        NameMultimap m = new NameMultimap();
+        for (int i = 0; i < 3000; i++) {
+            m.add("Dup", i % 100, i / 100);
+            m.add("N" + i, i, i);
+        }
+        int[] all = m.removeAll("Dup");
+        assertEquals(3000, all.length);
+        assertEquals(NameMultimap.pack(0, 0), all[0]);
+        assertEquals(NameMultimap.pack(99, 29), all[2999]);
+        assertEquals(0, m.count("Dup"));
+        assertEquals(0, m.removeAll("Dup").length);
+        assertEquals(3000, m.size());
+        assertEquals(3000, m.names());
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(1, m.count("N" + i));
+        }
+    }
+
+    /**
+     * Many names with growth and deletions stay findable (probe chains
+     * survive backward-shift deletion).
+     */
+    public void testGrowthAndDeleteChains() {
+        NameMultimap m = new NameMultimap();
+        for (int i = 0; i < 5000; i++) {
+            m.add("N" + i, i % 32768, i % 7);
+        }
+        for (int i = 0; i < 5000; i += 2) {
+            assertTrue(m.remove("N" + i, i % 32768, i % 7));
+        }
+        assertEquals(2500, m.names());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals((i % 2 == 0) ? 0 : 1, m.count("N" + i));
+        }
+        assertTrue(m.estimatedBytes() > 0);
+    }
+}
@@ -0,0 +1,382 @@
+import java.util.Arrays;
+
+/**
+ * Path-compressed radix trie over city names. Each node stores the chars
+ * of its incoming edge, so shared prefixes ("Saint ", "New ") are stored
+ * once and a lookup compares each char of the name at most once. Child
+ * arrays start at two slots and double as the fanout grows. Nodes where a
+ * name ends hold that name's coordinates as packed ints (see
+ * {@link NameMultimap#pack}) in insertion order.
+ *
+ * Children are kept sorted by their first char, so walking the trie visits
+ * names in {@link String#compareTo} order.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class NameTrie {
+
+    private static final char[] NO_CHARS = new char[0];
+    private static final int[] NO_COORDS = new int[0];
+
+    /**
+     * Receives (name, packed coordinate) pairs; return false to stop.
+     */
+    interface Visitor {
+        /**
+         * Visits one city.
+         *
+         * @param name   city name
+         * @param packed packed (x, y)
+         * @return true to continue, false to stop
+         */
+        boolean visit(String name, int packed);
+    }
+
+    // ------------------------------- Node --------------------------------
+    /**
+     * Trie node: incoming edge label, sorted children, coordinates.
+     */
+    private static final class Node {
+        char[] label;
+        char[] first = NO_CHARS;
+        Node[] kids;
+        int kidCount;
+        int[] coords = NO_COORDS;
+        int coordCount;
+
+        /**
+         * Creates a node.
+         *
+         * @param label incoming edge chars
+         */
+        Node(char[] label) {
+            this.label = label;
+        }
+
+        /** Index of the child starting with c, or -(insertion point) - 1. */
+        int find(char c) {
+            return Arrays.binarySearch(first, 0, kidCount, c);
+        }
+
+        void addKid(int at, Node k) {
+            if (kidCount == first.length) {
+                int cap = Math.max(2, kidCount * 2);
+                first = Arrays.copyOf(first, cap);
+                kids = (kids == null) ? new Node[cap]
+                    : Arrays.copyOf(kids, cap);
+            }
+            System.arraycopy(first, at, first, at + 1, kidCount - at);
+            System.arraycopy(kids, at, kids, at + 1, kidCount - at);
+            first[at] = k.label[0];
+            kids[at] = k;
+            kidCount = kidCount + 1;
+        }
+
+        void removeKid(int at) {
+            System.arraycopy(first, at + 1, first, at, kidCount - at - 1);
+            System.arraycopy(kids, at + 1, kids, at, kidCount - at - 1);
+            kidCount = kidCount - 1;
+            kids[kidCount] = null;
+        }
+    }
+
+    // ------------------------------ Fields -------------------------------
+    private final Node root = new Node(NO_CHARS);
+    private int size;
+    private int names;
+
+    // ---------------------------- Basic Ops ------------------------------
+    /** Removes everything. */
+    public void clear() {
+        root.first = NO_CHARS;
+        root.kids = null;
+        root.kidCount = 0;
+        root.coords = NO_COORDS;
+        root.coordCount = 0;
+        size = 0;
+        names = 0;
+    }
+
+    /**
+     * Returns the number of (name, x, y) entries.
+     *
+     * @return entry count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of distinct names.
+     *
+     * @return distinct name count
+     */
+    public int names() {
+        return names;
+    }
+
+    // ----------------------------- Insert --------------------------------
+    /**
+     * Adds a city.
+     *
+     * @param name city name
+     * @param x    x coordinate
+     * @param y    y coordinate
+     */
+    public void add(String name, int x, int y) {
+        Node n = root;
+        int i = 0;
+        int len = name.length();
+        while (i < len) {
+            int at = n.find(name.charAt(i));
+            if (at < 0) {
+                Node leaf = new Node(name.substring(i).toCharArray());
+                n.addKid(-at - 1, leaf);
+                n = leaf;
+                break;
+            }
+            Node c = n.kids[at];
+            int k = common(c.label, name, i);
+            if (k < c.label.length) {
+                // split c's edge after k chars
+                Node mid = new Node(Arrays.copyOf(c.label, k));
+                c.label = Arrays.copyOfRange(c.label, k, c.label.length);
+                mid.addKid(0, c);
+                n.kids[at] = mid;
+                c = mid;
+            }
+            n = c;
+            i = i + k;
+        }
+        if (n.coordCount == 0) {
+            names = names + 1;
+        }
+        if (n.coordCount == n.coords.length) {
+            n.coords = Arrays.copyOf(n.coords, Math.max(2, n.coordCount * 2));
+        }
+        n.coords[n.coordCount] = NameMultimap.pack(x, y);
+        n.coordCount = n.coordCount + 1;
+        size = size + 1;
+    }
+
+    /** Length of the common prefix of label and name[from..]. */
+    private static int common(char[] label, String name, int from) {
+        int max = Math.min(label.length, name.length() - from);
+        int k = 0;
+        while (k < max && label[k] == name.charAt(from + k)) {
+            k = k + 1;
+        }
+        return k;
+    }
+
+    // ----------------------------- Remove --------------------------------
+    /**
+     * Removes one city, keeping the name's other coordinates in order.
+     *
+     * @param name city name
+     * @param x    x coordinate
+     * @param y    y coordinate
+     * @return true if it was present
+     */
+    public boolean remove(String name, int x, int y) {
+        return removeRec(root, name, 0, NameMultimap.pack(x, y));
+    }
+
+    /**
+     * Recursive helper; prunes and re-compresses children on the way back.
+     *
+     * @param n    current node (its label already matched)
+     * @param name city name
+     * @param i    chars of name consumed
+     * @param p    packed coordinate
+     * @return true if removed
+     */
+    private boolean removeRec(Node n, String name, int i, int p) {
+        if (i == name.length()) {
+            for (int k = 0; k < n.coordCount; k++) {
+                if (n.coords[k] == p) {
+                    System.arraycopy(n.coords, k + 1, n.coords, k,
+                        n.coordCount - k - 1);
+                    n.coordCount = n.coordCount - 1;
+                    if (n.coordCount == 0) {
+                        names = names - 1;
+                        n.coords = NO_COORDS;
+                    }
+                    size = size - 1;
+                    return true;
+                }
+            }
+            return false;
+        }
+        int at = n.find(name.charAt(i));
+        if (at < 0) return false;
+        Node c = n.kids[at];
+        if (common(c.label, name, i) < c.label.length) return false;
+        if (!removeRec(c, name, i + c.label.length, p)) return false;
+        if (c.coordCount == 0) {
+            if (c.kidCount == 0) {
+                n.removeKid(at);
+            }
+            else if (c.kidCount == 1) {
+                Node g = c.kids[0];
+                char[] merged = Arrays.copyOf(c.label,
+                    c.label.length + g.label.length);
+                System.arraycopy(g.label, 0, merged, c.label.length,
+                    g.label.length);
+                g.label = merged;
+                n.kids[at] = g;
+            }
+        }
+        return true;
+    }
+
+    // ----------------------------- Lookups -------------------------------
+    /**
+     * Returns the packed coordinates for a name, in insertion order.
+     *
+     * @param name city name
+     * @return a fresh array (empty when absent)
+     */
+    public int[] get(String name) {
+        Node n = locate(name, false);
+        if (n == null) return NO_COORDS;
+        return Arrays.copyOf(n.coords, n.coordCount);
+    }
+
+    /**
+     * Walks to the node for {@code key}. With {@code prefix} set, a key
+     * ending inside an edge returns that edge's node.
+     */
+    private Node locate(String key, boolean prefix) {
+        Node n = root;
+        int i = 0;
+        while (i < key.length()) {
+            int at = n.find(key.charAt(i));
+            if (at < 0) return null;
+            Node c = n.kids[at];
+            int k = common(c.label, key, i);
+            if (k < c.label.length) {
+                return (prefix && i + k == key.length()) ? c : null;
+            }
+            n = c;
+            i = i + k;
+        }
+        return n;
+    }
+
+    /**
+     * Visits every city whose name starts with {@code prefix}, names in
+     * sorted order and each name's coordinates in insertion order.
+     *
+     * @param prefix name prefix ("" for all)
+     * @param limit  maximum number of visits
+     * @param v      visitor
+     * @return number of visits made
+     */
+    public int prefix(String prefix, int limit, Visitor v) {
+        Node n = locate(prefix, true);
+        if (n == null || limit <= 0) return 0;
+        // rebuild the full path text of n
+        StringBuilder path = new StringBuilder(prefix);
+        int inEdge = pathLengthMismatch(prefix, n);
+        path.append(n.label, n.label.length - inEdge, inEdge);
+        int[] left = new int[] { limit };
+        walk(n, path, false, left, v);
+        return limit - left[0];
+    }
+
+    /** Chars of n's label beyond the end of prefix (0 when it ends at n). */
+    private int pathLengthMismatch(String prefix, Node n) {
+        Node cur = root;
+        int i = 0;
+        while (cur != n) {
+            Node c = cur.kids[cur.find(prefix.charAt(i))];
+            i = i + c.label.length;
+            cur = c;
+        }
+        return i - prefix.length();
+    }
+
+    /**
+     * Visits every city in the order print() lists them: names sorted,
+     * and each name's cities newest first.
+     *
+     * @param v visitor
+     */
+    public void forEachInPrintOrder(Visitor v) {
+        walk(root, new StringBuilder(), true, new int[] { Integer.MAX_VALUE },
+            v);
+    }
+
+    /**
+     * Depth-first walk in sorted order.
+     *
+     * @param n        subtree root; path already includes its label
+     * @param path     name text down to n
+     * @param newest   true to list each name's coordinates newest first
+     * @param left     remaining visit budget (shared)
+     * @param v        visitor
+     * @return false once the visitor stops or the budget runs out
+     */
+    private boolean walk(Node n, StringBuilder path, boolean newest,
+        int[] left, Visitor v) {
+        if (n.coordCount > 0) {
+            String name = path.toString();
+            for (int k = 0; k < n.coordCount; k++) {
+                int p = newest ? n.coords[n.coordCount - 1 - k] : n.coords[k];
+                if (left[0] == 0 || !v.visit(name, p)) return false;
+                left[0] = left[0] - 1;
+            }
+        }
+        for (int k = 0; k < n.kidCount; k++) {
+            Node c = n.kids[k];
+            int mark = path.length();
+            path.append(c.label);
+            boolean more = walk(c, path, newest, left, v);
+            path.setLength(mark);
+            if (!more) return false;
+        }
+        return left[0] > 0;
+    }
+
+    /**
+     * Returns the print() text without the level column: one
+     * "name (x, y)" line per city in BST inorder order.
+     *
+     * @return listing
+     */
+    public String listing() {
+        StringBuilder sb = new StringBuilder();
+        forEachInPrintOrder((name, p) -> {
+            sb.append(name).append(" (").append(NameMultimap.unpackX(p))
+              .append(", ").append(NameMultimap.unpackY(p)).append(")\n");
+            return true;
+        });
+        return sb.toString();
+    }
+
+    /**
+     * Rough heap footprint (compressed references, 8-byte alignment).
+     *
+     * @return estimated bytes
+     */
+    public long estimatedBytes() {
+        return bytes(root);
+    }
+
+    private static long bytes(Node n) {
+        long b = 40 + arr(2L * n.label.length) + arr(2L * n.first.length)
+            + ((n.kids == null) ? 0 : arr(4L * n.kids.length))
+            + ((n.coords == NO_COORDS) ? 0 : arr(4L * n.coords.length));
+        for (int k = 0; k < n.kidCount; k++) {
+            b += bytes(n.kids[k]);
+        }
+        return b;
+    }
+
+    private static long arr(long payload) {
+        return (16 + payload + 7) & ~7L;
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import student.TestCase;
+
+/**
+ * Tests the compressed radix trie name index.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+public class NameTrieTest extends TestCase {
+
+    private NameTrie t;
+
+    /**
+     * Fresh trie with names that share prefixes and split edges.
+     */
+    public void setUp() {
+        t = new NameTrie();
+        t.add("Saint Paul", 1, 1);
+        t.add("Saint Louis", 2, 2);
+        t.add("Saint", 3, 3);
+        t.add("Salem", 4, 4);
+        t.add("Saint Paul", 5, 5);
+    }
+
+    /**
+     * Exact lookups, including names that end mid-edge.
+     */
+    public void testGet() {
+        assertEquals(5, t.size());
+        assertEquals(4, t.names());
+        int[] sp = t.get("Saint Paul");
+        assertEquals(2, sp.length);
+        assertEquals(NameMultimap.pack(1, 1), sp[0]);
+        assertEquals(NameMultimap.pack(5, 5), sp[1]);
+        assertEquals(1, t.get("Saint").length);
+        assertEquals(0, t.get("Sain").length);
+        assertEquals(0, t.get("Saint Paulo").length);
+        assertEquals(0, t.get("").length);
+    }
+
+    /**
+     * Prefix scans are sorted, limited and work from inside an edge.
+     */
+    public void testPrefix() {
+        List<String> out = new ArrayList<>();
+        NameTrie.Visitor v = (name, p) -> out.add(name + "@"
+            + NameMultimap.unpackX(p));
+        assertEquals(4, t.prefix("Saint", 10, v));
+        assertEquals("[Saint@3, Saint Louis@2, Saint Paul@1, Saint Paul@5]",
+            out.toString());
+        out.clear();
+        assertEquals(2, t.prefix("Sai", 2, v));
+        assertEquals("[Saint@3, Saint Louis@2]", out.toString());
+        out.clear();
+        assertEquals(1, t.prefix("Sale", 5, v));
+        assertEquals(0, t.prefix("X", 5, v));
+        assertEquals(5, t.prefix("", 99, v));
+    }
+
+    /**
+     * Removal prunes and re-merges edges; lookups stay correct.
+     */
+    public void testRemoveCompresses() {
+        long before = t.estimatedBytes();
+        assertTrue(t.remove("Saint", 3, 3));
+        assertFalse(t.remove("Saint", 3, 3));
+        assertFalse(t.remove("Sain", 3, 3));
+        assertTrue(t.remove("Saint Louis", 2, 2));
+        assertEquals(2, t.get("Saint Paul").length);
+        assertTrue(t.remove("Saint Paul", 1, 1));
+        assertTrue(t.remove("Saint Paul", 5, 5));
+        assertEquals(1, t.size());
+        assertEquals(1, t.names());
+        assertEquals("Salem (4, 4)\n", t.listing());
+        assertTrue(t.estimatedBytes() < before);
+        t.clear();
+        assertEquals("", t.listing());
+    }
+
+    /**
+     * listing() matches print() without the level column.
+     */
+    public void testListingMatchesPrint() {
+        GISDB db = new GISDB();
+        NameTrie trie = new NameTrie();
+        Random r = new Random(5);
+        String[] pool = { "New York", "Newark", "New Haven", "Newport",
+            "North", "Norfolk", "N", "New" };
+        for (int i = 0; i < 300; i++) {
+            String nm = pool[r.nextInt(pool.length)];
+            int x = r.nextInt(40);
+            int y = r.nextInt(40);
+            if (db.insert(nm, x, y)) {
+                trie.add(nm, x, y);
+            }
+            if (i % 3 == 0) {
+                String info = db.info(x / 2, y / 2);
+                if (!info.isEmpty()) {
+                    db.delete(x / 2, y / 2);
+                    assertTrue(trie.remove(info, x / 2, y / 2));
+                }
+            }
+        }
+        String print = db.print().replaceAll("(?m)^\\d+ *", "");
+        assertEquals(print, trie.listing());
+    }
+}
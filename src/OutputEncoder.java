@@ -0,0 +1,383 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Formats result text as UTF-8 straight into one reusable byte buffer.
+ * Ints are written through a two-digit table, level indentation is copied
+ * from a table of spaces, and ASCII names are copied char by char; other
+ * names reuse the bytes their {@link NameDictionary} encoded at intern,
+ * or are encoded here (the last such name is kept). As with
+ * String.getBytes, an unpaired surrogate is written as '?', so a String
+ * built from the output shows '?' where the name had one.
+ *
+ * With a sink the buffer is handed over by {@link #flushIfFull()} and
+ * {@link #flush()} and then reused, so memory stays bounded. Without one,
+ * {@link #flushIfFull()} sets full buffers aside instead of doubling one
+ * ever larger array, and {@link #toString()} joins them.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class OutputEncoder {
+
+    /** Bytes held before {@link #flushIfFull()} hands them to the sink. */
+    static final int FLUSH_BYTES = 8192;
+
+    private static final byte[] SPACES = new byte[256];
+    private static final byte[] TENS = new byte[100];
+    private static final byte[] ONES = new byte[100];
+
+    static {
+        Arrays.fill(SPACES, (byte) ' ');
+        for (int i = 0; i < 100; i++) {
+            TENS[i] = (byte) ('0' + i / 10);
+            ONES[i] = (byte) ('0' + i % 10);
+        }
+    }
+
+    private final WritableByteChannel channel;
+    private final Appendable chars;
+    private final int flushAt;
+    private byte[] buf;
+    private int len;
+    private byte[][] parts = new byte[0][];    // set-aside buffers, no sink
+    private int[] partLens = new int[0];
+    private int partCount;
+    private long partBytes;
+
+    private NameDictionary dictionary;  // encoded names by id, or null
+    private String lastName;            // names the dictionary lacks
+    private byte[] lastBytes;
+
+    /** Creates an encoder that grows and keeps everything. */
+    OutputEncoder() {
+        this(null, null, FLUSH_BYTES);
+    }
+
+    /**
+     * Creates an encoder that writes to a channel.
+     *
+     * @param out the sink
+     */
+    OutputEncoder(WritableByteChannel out) {
+        this(out, null, FLUSH_BYTES);
+    }
+
+    /**
+     * Creates an encoder that writes to a channel in larger chunks.
+     *
+     * @param out        the sink
+     * @param flushBytes bytes held before {@link #flushIfFull()} writes
+     */
+    OutputEncoder(WritableByteChannel out, int flushBytes) {
+        this(out, null, flushBytes);
+    }
+
+    /**
+     * Creates an encoder that hands decoded chunks to an Appendable.
+     *
+     * @param out the sink
+     */
+    OutputEncoder(Appendable out) {
+        this(null, out, FLUSH_BYTES);
+    }
+
+    private OutputEncoder(WritableByteChannel channel, Appendable chars,
+                          int flushAt) {
+        this.channel = channel;
+        this.chars = chars;
+        this.flushAt = flushAt;
+        this.buf = new byte[(channel == null && chars == null)
+            ? 256 : flushAt + 256];
+    }
+
+    /**
+     * Makes name ids refer to a dictionary, so non-ASCII names are copied
+     * from the bytes it encoded. Reads it without locking; the caller
+     * keeps it from changing while this encoder writes.
+     *
+     * @param d the dictionary the ids come from
+     * @return this encoder
+     */
+    OutputEncoder dictionary(NameDictionary d) {
+        this.dictionary = d;
+        return this;
+    }
+
+    /**
+     * Appends ASCII text; every char must be below 0x80.
+     *
+     * @param s the text
+     * @return this encoder
+     */
+    OutputEncoder ascii(String s) {
+        int n = s.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            buf[len + i] = (byte) s.charAt(i);
+        }
+        len = len + n;
+        return this;
+    }
+
+    /**
+     * Appends any text as UTF-8, without caching it.
+     *
+     * @param s the text
+     * @return this encoder
+     */
+    OutputEncoder text(String s) {
+        int n = s.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            char ch = s.charAt(i);
+            if (ch >= 0x80) {
+                byte[] u = s.substring(i).getBytes(StandardCharsets.UTF_8);
+                len = len + i;
+                ensure(u.length);
+                System.arraycopy(u, 0, buf, len, u.length);
+                len = len + u.length;
+                return this;
+            }
+            buf[len + i] = (byte) ch;
+        }
+        len = len + n;
+        return this;
+    }
+
+    /**
+     * Appends one ASCII char.
+     *
+     * @param c the char, below 0x80
+     * @return this encoder
+     */
+    OutputEncoder ascii(char c) {
+        ensure(1);
+        buf[len++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Appends an int in decimal.
+     *
+     * @param v the value
+     * @return this encoder
+     */
+    OutputEncoder number(int v) {
+        if (v < 0) {
+            if (v == Integer.MIN_VALUE) return ascii("-2147483648");
+            ascii('-');
+            v = -v;
+        }
+        int digits = 1;
+        for (int p = 10; digits < 10 && v >= p; p = p * 10) {
+            digits = digits + 1;
+        }
+        ensure(digits);
+        int at = len + digits;
+        while (v >= 100) {
+            int q = v / 100;
+            int r = v - q * 100;
+            v = q;
+            buf[--at] = ONES[r];
+            buf[--at] = TENS[r];
+        }
+        if (v >= 10) {
+            buf[--at] = ONES[v];
+            buf[--at] = TENS[v];
+        }
+        else {
+            buf[--at] = (byte) ('0' + v);
+        }
+        len = len + digits;
+        return this;
+    }
+
+    /**
+     * Appends a level prefix: the level, then 2*level spaces.
+     *
+     * @param level tree level
+     * @return this encoder
+     */
+    OutputEncoder indent(int level) {
+        number(level);
+        int n = 2 * level;
+        ensure(n);
+        while (n > 0) {
+            int k = Math.min(n, SPACES.length);
+            System.arraycopy(SPACES, 0, buf, len, k);
+            len = len + k;
+            n = n - k;
+        }
+        return this;
+    }
+
+    /**
+     * Appends a city's name.
+     *
+     * @param c the city
+     * @return this encoder
+     */
+    OutputEncoder name(City c) {
+        return name(c.getName(), c.getNameId());
+    }
+
+    /**
+     * Appends a name.
+     *
+     * @param s  the name
+     * @param id its id in the encoder's dictionary, or -1
+     * @return this encoder
+     */
+    OutputEncoder name(String s, int id) {
+        int n = s.length();
+        ensure(n);
+        int i = 0;
+        while (i < n) {
+            char ch = s.charAt(i);
+            if (ch >= 0x80) break;
+            buf[len + i] = (byte) ch;
+            i = i + 1;
+        }
+        if (i == n) {
+            len = len + n;
+            return this;
+        }
+        byte[] u = utf8(s, id);
+        ensure(u.length);
+        System.arraycopy(u, 0, buf, len, u.length);
+        len = len + u.length;
+        return this;
+    }
+
+    /**
+     * Appends "name (x, y)" and a newline.
+     *
+     * @param s  the name
+     * @param id its {@link NameDictionary} id, or -1
+     * @param x  x coordinate
+     * @param y  y coordinate
+     * @return this encoder
+     */
+    OutputEncoder cityLine(String s, int id, int x, int y) {
+        name(s, id).ascii(" (").number(x).ascii(", ").number(y);
+        return ascii(")\n");
+    }
+
+    /**
+     * Appends "name (x, y)" and a newline for a city.
+     *
+     * @param c the city
+     * @return this encoder
+     */
+    OutputEncoder cityLine(City c) {
+        return cityLine(c.getName(), c.getNameId(), c.getX(), c.getY());
+    }
+
+    /**
+     * Hands the buffer to the sink once it holds {@value #FLUSH_BYTES}
+     * bytes (or the size given to the constructor) or more; without a
+     * sink, sets it aside for toString(). Call only between lines.
+     *
+     * @throws IOException from the sink
+     */
+    void flushIfFull() throws IOException {
+        if (len < flushAt) return;
+        if (channel != null || chars != null) {
+            flush();
+            return;
+        }
+        if (partCount == parts.length) {
+            parts = Arrays.copyOf(parts, Math.max(16, partCount * 2));
+            partLens = Arrays.copyOf(partLens, parts.length);
+        }
+        parts[partCount] = buf;
+        partLens[partCount] = len;
+        partCount = partCount + 1;
+        partBytes = partBytes + len;
+        buf = new byte[FLUSH_BYTES + 256];
+        len = 0;
+    }
+
+    /**
+     * Hands everything buffered to the sink; does nothing without one.
+     *
+     * @throws IOException from the sink
+     */
+    void flush() throws IOException {
+        if (len == 0) return;
+        if (channel != null) {
+            ByteBuffer bb = ByteBuffer.wrap(buf, 0, len);
+            while (bb.hasRemaining()) {
+                channel.write(bb);
+            }
+        }
+        else if (chars != null) {
+            // a chunk never splits a line, so never a UTF-8 sequence
+            chars.append(new String(buf, 0, len, StandardCharsets.UTF_8));
+        }
+        else {
+            return;
+        }
+        len = 0;
+    }
+
+    /**
+     * Returns the number of bytes buffered.
+     *
+     * @return byte count
+     */
+    int length() {
+        return (int) Math.min(Integer.MAX_VALUE, partBytes + len);
+    }
+
+    /** Discards the buffered bytes. */
+    void reset() {
+        Arrays.fill(parts, 0, partCount, null);
+        partCount = 0;
+        partBytes = 0;
+        len = 0;
+    }
+
+    /**
+     * Decodes the buffered bytes.
+     *
+     * @return the buffered text
+     */
+    @Override
+    public String toString() {
+        if (partCount == 0) {
+            return new String(buf, 0, len, StandardCharsets.UTF_8);
+        }
+        byte[] all = new byte[Math.toIntExact(partBytes + len)];
+        int at = 0;
+        for (int i = 0; i < partCount; i++) {
+            System.arraycopy(parts[i], 0, all, at, partLens[i]);
+            at = at + partLens[i];
+        }
+        System.arraycopy(buf, 0, all, at, len);
+        return new String(all, StandardCharsets.UTF_8);
+    }
+
+    private byte[] utf8(String s, int id) {
+        if (dictionary != null) {
+            byte[] u = dictionary.utf8(id, s);
+            if (u != null) return u;
+        }
+        if (s != lastName) {
+            lastBytes = s.getBytes(StandardCharsets.UTF_8);
+            lastName = s;
+        }
+        return lastBytes;
+    }
+
+    private void ensure(int n) {
+        if (len + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+        }
+    }
+}
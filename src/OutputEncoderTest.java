@@ -0,0 +1,128 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import student.TestCase;
+
+/**
+ * Tests the byte-level output encoder against StringBuilder formatting.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+public class OutputEncoderTest extends TestCase {
+
+    /**
+     * Ints print as Integer.toString does, including the edges.
+     */
+    public void testNumbers() {
+        int[] values = { 0, 7, 9, 10, 42, 99, 100, 101, 999, 1000, 32767,
+            65536, 1234567890, Integer.MAX_VALUE, -1, -10, -32768,
+            Integer.MIN_VALUE };
+        OutputEncoder enc = new OutputEncoder();
+        StringBuilder sb = new StringBuilder();
+        for (int v : values) {
+            enc.number(v).ascii(' ');
+            sb.append(v).append(' ');
+        }
+        assertEquals(sb.toString(), enc.toString());
+    }
+
+    /**
+     * Indentation is the level and 2*level spaces, past the table size too.
+     */
+    public void testIndent() {
+        for (int level : new int[] { 0, 1, 5, 127, 128, 300 }) {
+            OutputEncoder enc = new OutputEncoder();
+            StringBuilder sb = new StringBuilder().append(level);
+            for (int i = 0; i < 2 * level; i++) {
+                sb.append(' ');
+            }
+            assertEquals(sb.toString(), enc.indent(level).toString());
+        }
+    }
+
+    /**
+     * Non-ASCII names come out as UTF-8, from the dictionary's bytes when
+     * the id and String match it, and encoded here otherwise; an unpaired
+     * surrogate comes out as '?'.
+     */
+    public void testNamesAndCache() {
+        NameDictionary d = new NameDictionary();
+        int zid = d.intern("Zürich");
+        String zurich = d.name(zid);
+        OutputEncoder enc = new OutputEncoder().dictionary(d);
+        enc.cityLine(zurich, zid, 1, 2).cityLine(zurich, zid, 4, 5);
+        enc.cityLine("東京", zid, 6, 7);
+        enc.cityLine("a😀b", -1, 8, 9).cityLine("Ames", -1, 0, 0);
+        enc.cityLine("x\ud800y", 7, 1, 1);
+        assertEquals("Zürich (1, 2)\nZürich (4, 5)\n東京 (6, 7)\n"
+            + "a😀b (8, 9)\nAmes (0, 0)\nx?y (1, 1)\n", enc.toString());
+        d.release(zid);
+        enc.reset();
+        enc.cityLine(zurich, zid, 1, 2);
+        assertEquals("Zürich (1, 2)\n", enc.toString());
+        enc.reset();
+        assertEquals(0, enc.length());
+        City c = new City("Köln", 10, 20, 0);
+        enc.cityLine(c);
+        assertEquals("Köln (10, 20)\n", enc.toString());
+        assertEquals(15, enc.length());
+    }
+
+    /**
+     * Sinks receive the bytes in bounded chunks and nothing is lost.
+     *
+     * @throws Exception on failure
+     */
+    public void testSinks() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputEncoder toChannel = new OutputEncoder(Channels.newChannel(bytes));
+        StringBuilder chars = new StringBuilder();
+        OutputEncoder toChars = new OutputEncoder(chars);
+        StringBuilder expect = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            String name = (i % 3 == 0) ? "Łódź" : "City" + i;
+            toChannel.indent(i % 7).cityLine(name, i % 50, i, -i);
+            toChannel.flushIfFull();
+            assertTrue(toChannel.length() < OutputEncoder.FLUSH_BYTES + 100);
+            toChars.indent(i % 7).cityLine(name, -1, i, -i);
+            toChars.flushIfFull();
+            expect.append(i % 7);
+            for (int k = 0; k < 2 * (i % 7); k++) {
+                expect.append(' ');
+            }
+            expect.append(name).append(" (").append(i).append(", ")
+                .append(-i).append(")\n");
+        }
+        toChannel.flush();
+        toChars.flush();
+        assertEquals(0, toChannel.length());
+        assertEquals(expect.toString(), bytes.toString("UTF-8"));
+        assertEquals(expect.toString(), chars.toString());
+        assertEquals(expect.toString().getBytes(StandardCharsets.UTF_8).length,
+            bytes.size());
+    }
+
+    /**
+     * search and delete by coordinate, now encoded too, still print what
+     * the StringBuilder versions did, non-ASCII names included.
+     */
+    public void testSearchAndDeleteText() {
+        GISDB db = new GISDB();
+        db.insert("Łódź", 10, 10);
+        db.insert("Köln", 12, 10);
+        db.insert("Far", 900, 900);
+        KDTree t = new KDTree();
+        t.insert(new City("Łódź", 10, 10));
+        t.insert(new City("Köln", 12, 10));
+        t.insert(new City("Far", 900, 900));
+        KDTree.SearchOutcome res = t.rangeSearch(10, 10, 5);
+        assertEquals("Łódź (10, 10)\nKöln (12, 10)\n", res.listing);
+        assertEquals(res.listing + res.visited, db.search(10, 10, 5));
+        assertEquals("0", new GISDB().search(1, 1, 5));
+        assertTrue(db.delete(12, 10).matches("[0-9]+\nKöln"));
+        assertTrue(db.delete(10, 10).matches("[0-9]+\nŁódź"));
+        assertEquals("", db.delete(10, 10));
+    }
+}
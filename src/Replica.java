@@ -0,0 +1,254 @@
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Read-only follower of a leader {@link GISDB}. Batches arrive through
+ * {@link #receive} and are applied in order by a background thread, so
+ * reads may trail the leader by {@link #lag()} ops. Mutating methods of
+ * {@link GIS} are rejected: inserts return false, deletes return "",
+ * clear returns false. A replica holds no snapshot of earlier state, so it
+ * must see the log from its first op; {@link LoopbackTransport} refuses to
+ * attach one once shipping has started. {@link #close()} stops the
+ * applier. Give a replica the leader's name options so bulk loads build
+ * the same name BST and print() matches.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class Replica implements GIS {
+
+    private final GISDB db;
+    private final LinkedBlockingQueue<ReplicationLog.Batch> inbox =
+        new LinkedBlockingQueue<>();
+    private final Thread applier;
+    private volatile long received;
+    private volatile long applied;
+    private volatile boolean closed;
+
+    // queued by close(); the applier stops when it takes it
+    private static final ReplicationLog.Batch STOP =
+        new ReplicationLog.Batch(new ReplicationLog.Op[0]);
+
+    /**
+     * Creates a replica with default name options and starts its applier
+     * thread.
+     */
+    public Replica() {
+        this(0);
+    }
+
+    /**
+     * Creates a replica and starts its applier thread.
+     *
+     * @param nameOptions the leader's {@link GISDB#nameOptions()}
+     */
+    public Replica(int nameOptions) {
+        db = new GISDB(nameOptions);
+        applier = new Thread(this::run, "replica-applier");
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    /**
+     * Queues a batch for asynchronous application. Ignored once the
+     * replica is closed.
+     *
+     * @param b batch shipped by the leader
+     */
+    void receive(ReplicationLog.Batch b) {
+        if (closed) return;
+        received = b.lastSeq();
+        inbox.add(b);
+    }
+
+    /**
+     * Applies the batches already received, then stops the applier thread
+     * and waits for it. Later batches are ignored; reads keep working on
+     * the state reached.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void close() throws InterruptedException {
+        if (!closed) {
+            closed = true;
+            inbox.add(STOP);
+        }
+        applier.join();
+    }
+
+    /**
+     * Returns whether the applier thread is still running.
+     *
+     * @return false once closed
+     */
+    boolean isRunning() {
+        return applier.isAlive();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                ReplicationLog.Batch b = inbox.take();
+                if (b == STOP) return;
+                synchronized (db) {
+                    for (ReplicationLog.Op op : b.ops) {
+                        if (op.seq <= applied) continue;
+                        apply(op);
+                    }
+                    applied = b.lastSeq();
+                    db.notifyAll();
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void apply(ReplicationLog.Op op) {
+        switch (op.kind) {
+            case ReplicationLog.INSERT:
+                db.insert(op.name, op.x, op.y);
+                break;
+            case ReplicationLog.DELETE:
+                db.delete(op.x, op.y);
+                break;
+            case ReplicationLog.BULK:
+                int n = op.rows.length;
+                String[] cityNames = new String[n];
+                int[] xs = new int[n];
+                int[] ys = new int[n];
+                for (int i = 0; i < n; i++) {
+                    cityNames[i] = op.rows[i].getName();
+                    xs[i] = op.rows[i].getX();
+                    ys[i] = op.rows[i].getY();
+                }
+                db.bulkLoad(cityNames, xs, ys);
+                break;
+            default:
+                db.clear();
+                break;
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last op applied locally.
+     *
+     * @return applied sequence number
+     */
+    public long appliedSeq() {
+        return applied;
+    }
+
+    /**
+     * Returns how many received ops are not yet visible to readers.
+     *
+     * @return replication lag in ops
+     */
+    public long lag() {
+        return received - applied;
+    }
+
+    /**
+     * Blocks until ops up to {@code seq} are applied or the timeout passes.
+     *
+     * @param seq       sequence number to wait for
+     * @param timeoutMs maximum wait in milliseconds
+     * @return true if caught up
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitSeq(long seq, long timeoutMs)
+        throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (db) {
+            while (applied < seq) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) return false;
+                db.wait(left);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replicas are read-only.
+     * @return always false
+     */
+    public boolean clear() {
+        return false;
+    }
+
+    /**
+     * Replicas are read-only.
+     * @return always false
+     */
+    public boolean insert(String name, int x, int y) {
+        return false;
+    }
+
+    /**
+     * Replicas are read-only.
+     * @return always ""
+     */
+    public String delete(int x, int y) {
+        return "";
+    }
+
+    /**
+     * Replicas are read-only.
+     * @return always ""
+     */
+    public String delete(String name) {
+        return "";
+    }
+
+    /**
+     * Name at coordinate, as of the last applied op.
+     * @return name or ""
+     */
+    public String info(int x, int y) {
+        synchronized (db) {
+            return db.info(x, y);
+        }
+    }
+
+    /**
+     * Coordinates for a name, as of the last applied op.
+     * @return listing or ""
+     */
+    public String info(String name) {
+        synchronized (db) {
+            return db.info(name);
+        }
+    }
+
+    /**
+     * Range search, as of the last applied op.
+     * @return listing followed by visit count
+     */
+    public String search(int x, int y, int radius) {
+        synchronized (db) {
+            return db.search(x, y, radius);
+        }
+    }
+
+    /**
+     * kd-tree listing, as of the last applied op.
+     * @return debug listing
+     */
+    public String debug() {
+        synchronized (db) {
+            return db.debug();
+        }
+    }
+
+    /**
+     * BST listing, as of the last applied op.
+     * @return print listing
+     */
+    public String print() {
+        synchronized (db) {
+            return db.print();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+import student.TestCase;
+
+/**
+ * Tests leader-to-replica shipping over the loopback transport.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+public class ReplicaTest extends TestCase {
+
+    private GISDB leader;
+    private LoopbackTransport transport;
+    private ReplicationLog log;
+    private Replica replica;
+
+    /**
+     * Wires a leader to one replica with batches of 4 ops.
+     */
+    public void setUp() {
+        transport = new LoopbackTransport();
+        replica = new Replica();
+        transport.attach(replica);
+        log = new ReplicationLog(transport, 4);
+        leader = new GISDB();
+        leader.addListener(log);
+    }
+
+    /**
+     * Stops the replica's applier.
+     * @throws InterruptedException if interrupted
+     */
+    public void tearDown() throws InterruptedException {
+        log.close();
+        replica.close();
+    }
+
+    /**
+     * Ops are batched: nothing ships until the batch fills or is flushed.
+     * @throws InterruptedException if interrupted
+     */
+    public void testBatchingAndFlush() throws InterruptedException {
+        leader.insert("A", 1, 1);
+        leader.insert("B", 2, 2);
+        assertEquals(2, log.pendingCount());
+        assertEquals("", replica.info(1, 1));
+        leader.insert("C", 3, 3);
+        leader.insert("D", 4, 4);
+        assertEquals(0, log.pendingCount());
+        assertTrue(replica.awaitSeq(4, 5000));
+        assertEquals("C", replica.info(3, 3));
+        leader.insert("E", 5, 5);
+        log.flush();
+        assertTrue(replica.awaitSeq(5, 5000));
+        assertEquals(0, replica.lag());
+        assertEquals(5, log.headSeq());
+    }
+
+    /**
+     * After catching up the replica renders exactly what the leader does.
+     * @throws InterruptedException if interrupted
+     */
+    public void testReplicaMatchesLeader() throws InterruptedException {
+        leader.insert("M", 50, 50);
+        leader.insert("A", 10, 10);
+        leader.insert("Z", 90, 90);
+        leader.insert("A", 20, 20);
+        leader.insert("Q", 60, 40);
+        assertFalse(leader.insert("Dup", 10, 10));
+        leader.delete(50, 50);
+        leader.delete("A");
+        leader.insert("B", 5, 5);
+        log.flush();
+        assertTrue(replica.awaitSeq(log.headSeq(), 5000));
+        assertEquals(leader.print(), replica.print());
+        assertEquals(leader.debug(), replica.debug());
+        assertEquals(leader.search(50, 50, 100),
+            replica.search(50, 50, 100));
+        assertEquals(leader.info("Q"), replica.info("Q"));
+    }
+
+    /**
+     * Clear replicates, and the replica rejects direct writes.
+     * @throws InterruptedException if interrupted
+     */
+    public void testClearAndReadOnly() throws InterruptedException {
+        leader.insert("A", 1, 1);
+        leader.clear();
+        leader.insert("B", 2, 2);
+        log.flush();
+        assertTrue(replica.awaitSeq(3, 5000));
+        assertEquals("", replica.info(1, 1));
+        assertEquals("B", replica.info(2, 2));
+        assertFalse(replica.insert("X", 7, 7));
+        assertEquals("", replica.delete(2, 2));
+        assertEquals("", replica.delete("B"));
+        assertFalse(replica.clear());
+        assertEquals("B", replica.info(2, 2));
+    }
+
+    /**
+     * A removed listener no longer sees mutations.
+     */
+    public void testRemoveListener() {
+        assertTrue(leader.removeListener(log));
+        assertFalse(leader.removeListener(log));
+        leader.insert("A", 1, 1);
+        assertEquals(0, log.headSeq());
+    }
+
+    /**
+     * A replica cannot join once batches have shipped: it would report no
+     * lag while missing the earlier state. Before that it catches up fully.
+     * @throws InterruptedException if interrupted
+     */
+    public void testLateAttach() throws InterruptedException {
+        leader.insert("A", 1, 1);
+        Replica early = new Replica();
+        transport.attach(early);
+        for (int i = 2; i <= 4; i++) {
+            leader.insert("C" + i, i, i);
+        }
+        Replica late = new Replica();
+        Exception thrown = null;
+        try {
+            transport.attach(late);
+        }
+        catch (IllegalStateException e) {
+            thrown = e;
+        }
+        assertNotNull(thrown);
+        assertTrue(early.awaitSeq(4, 5000));
+        assertEquals("A", early.info(1, 1));
+        assertTrue(transport.detach(early));
+        assertFalse(transport.detach(late));
+        early.close();
+        late.close();
+    }
+
+    /**
+     * close() applies what was received, stops the applier and ignores
+     * later batches; reads still work.
+     * @throws InterruptedException if interrupted
+     */
+    public void testClose() throws InterruptedException {
+        leader.insert("A", 1, 1);
+        log.flush();
+        assertTrue(replica.isRunning());
+        replica.close();
+        assertFalse(replica.isRunning());
+        assertEquals(1, replica.appliedSeq());
+        assertEquals("A", replica.info(1, 1));
+        leader.insert("B", 2, 2);
+        log.flush();
+        assertEquals(1, replica.appliedSeq());
+        assertEquals(0, replica.lag());
+        replica.close();
+    }
+
+    /**
+     * With a delay, a partial batch ships on its own; close() ships the
+     * rest and stops the timer.
+     * @throws InterruptedException if interrupted
+     */
+    public void testTimedFlush() throws InterruptedException {
+        leader.removeListener(log);
+        ReplicationLog timed = new ReplicationLog(transport, 100, 20);
+        leader.addListener(timed);
+        assertTrue(timed.isTimerRunning());
+        leader.insert("A", 1, 1);
+        leader.insert("B", 2, 2);
+        assertTrue(replica.awaitSeq(2, 5000));
+        assertEquals(0, timed.pendingCount());
+        leader.insert("C", 3, 3);
+        timed.close();
+        assertFalse(timed.isTimerRunning());
+        assertTrue(replica.awaitSeq(3, 5000));
+        assertEquals("C", replica.info(3, 3));
+        assertFalse(log.isTimerRunning());
+    }
+
+    /**
+     * A bulk load ships as one op, and a replica built with the leader's
+     * name options prints the same name tree for every option.
+     * @throws InterruptedException if interrupted
+     */
+    public void testBulkLoadMatchesLeader() throws InterruptedException {
+        int[] options = { 0, BST.BALANCED, BST.GROUPED, GISDB.LAZY_NAMES,
+            BST.BALANCED | GISDB.LAZY_NAMES };
+        String[] cityNames = { "A", "B", "C", "D", "E" };
+        int[] xs = { 1, 2, 3, 4, 5 };
+        int[] ys = { 1, 2, 3, 4, 5 };
+        for (int opt : options) {
+            GISDB lead = new GISDB(opt);
+            LoopbackTransport t = new LoopbackTransport();
+            Replica r = new Replica(lead.nameOptions());
+            t.attach(r);
+            ReplicationLog l = new ReplicationLog(t, 4);
+            lead.addListener(l);
+            lead.bulkLoad(cityNames, xs, ys);
+            assertEquals(1, l.headSeq());
+            lead.insert("F", 6, 6);
+            lead.delete(2, 2);
+            l.flush();
+            assertTrue(r.awaitSeq(3, 5000));
+            assertEquals(lead.print(), r.print());
+            assertEquals(lead.debug(), r.debug());
+            l.close();
+            r.close();
+        }
+        GISDB lead = new GISDB();
+        lead.bulkLoad(cityNames, xs, ys);
+        assertTrue(lead.print().contains("\n0C (3, 3)\n"));
+    }
+}
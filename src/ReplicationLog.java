@@ -0,0 +1,267 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Leader side of GISDB replication. Registered as a {@link MutationListener}
+ * on the leader, it turns every mutation into a numbered {@link Op} and
+ * ships them to followers in batches through a {@link Transport}.
+ * Sequence numbers start at 1 and have no gaps. A batch ships when it is
+ * full, on {@link #flush()}, or, with a delay, once its oldest op has
+ * waited that long; {@link #close()} ships the rest and stops the timer.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class ReplicationLog implements MutationListener {
+
+    /** Op kind: insert (name, x, y). */
+    public static final int INSERT = 0;
+    /** Op kind: delete the city at (x, y). */
+    public static final int DELETE = 1;
+    /** Op kind: clear the database. */
+    public static final int CLEAR = 2;
+    /** Op kind: bulk load the cities in {@code rows}. */
+    public static final int BULK = 3;
+
+    /**
+     * One replicated mutation.
+     */
+    public static final class Op {
+        /** One of INSERT, DELETE, CLEAR, BULK. */
+        public final int kind;
+        /** City name (INSERT only, otherwise {@code null}). */
+        public final String name;
+        /** x coordinate (unused for CLEAR and BULK). */
+        public final int x;
+        /** y coordinate (unused for CLEAR and BULK). */
+        public final int y;
+        /** Position of this op in the leader's log. */
+        public final long seq;
+        /** Cities loaded (BULK only, otherwise {@code null}). */
+        public final City[] rows;
+
+        /**
+         * Creates an op.
+         *
+         * @param kind op kind
+         * @param name city name or {@code null}
+         * @param x    x coordinate
+         * @param y    y coordinate
+         * @param seq  sequence number
+         * @param rows cities for BULK, otherwise {@code null}
+         */
+        Op(int kind, String name, int x, int y, long seq, City[] rows) {
+            this.kind = kind;
+            this.name = name;
+            this.x = x;
+            this.y = y;
+            this.seq = seq;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * A contiguous run of ops shipped together.
+     */
+    public static final class Batch {
+        /** Ops in log order. */
+        public final Op[] ops;
+
+        /**
+         * Creates a batch.
+         *
+         * @param ops ops in log order (non-empty)
+         */
+        Batch(Op[] ops) {
+            this.ops = ops;
+        }
+
+        /**
+         * Returns the sequence number of the last op in the batch.
+         *
+         * @return last sequence number
+         */
+        public long lastSeq() {
+            return ops[ops.length - 1].seq;
+        }
+    }
+
+    /**
+     * Carries batches from the leader to its followers.
+     */
+    interface Transport {
+        /**
+         * Delivers one batch. Batches are shipped in log order.
+         *
+         * @param b batch to deliver
+         */
+        void ship(Batch b);
+    }
+
+    private final Transport transport;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final Thread flusher;       // null without a delay
+    private final List<Op> pending = new ArrayList<>();
+    private long firstPendingAt;        // nanoTime of pending.get(0)
+    private long seq;
+    private boolean closed;
+
+    /**
+     * Creates a log that ships once {@code batchSize} ops are pending.
+     *
+     * @param transport where batches go
+     * @param batchSize ops per batch (at least 1)
+     */
+    public ReplicationLog(Transport transport, int batchSize) {
+        this(transport, batchSize, 0);
+    }
+
+    /**
+     * Creates a log that ships once {@code batchSize} ops are pending or
+     * the oldest pending op is {@code maxDelayMs} old, whichever is first.
+     *
+     * @param transport  where batches go
+     * @param batchSize  ops per batch (at least 1)
+     * @param maxDelayMs longest an op waits for its batch, or 0 to wait
+     *                   for a full batch or {@link #flush()}
+     */
+    public ReplicationLog(Transport transport, int batchSize,
+                          long maxDelayMs) {
+        if (transport == null) {
+            throw new IllegalArgumentException("null transport");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize < 1");
+        }
+        if (maxDelayMs < 0) {
+            throw new IllegalArgumentException("maxDelayMs < 0");
+        }
+        this.transport = transport;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelayMs * 1_000_000L;
+        if (maxDelayMs > 0) {
+            flusher = new Thread(this::runFlusher, "replication-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+        else {
+            flusher = null;
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void inserted(City c) {
+        append(INSERT, c.getName(), c.getX(), c.getY(), null);
+    }
+
+    /**
+     * Logs the whole load as one BULK op, so a replica rebuilds its name
+     * index the way the leader did.
+     *
+     * @param cities the inserted cities
+     */
+    public void bulkLoaded(City[] cities) {
+        append(BULK, null, 0, 0, cities);
+    }
+
+    /** {@inheritDoc} */
+    public void deleted(City c) {
+        append(DELETE, null, c.getX(), c.getY(), null);
+    }
+
+    /** {@inheritDoc} */
+    public void cleared() {
+        append(CLEAR, null, 0, 0, null);
+    }
+
+    private synchronized void append(int kind, String name, int x, int y,
+                                     City[] rows) {
+        seq = seq + 1;
+        if (pending.isEmpty()) {
+            firstPendingAt = System.nanoTime();
+            notifyAll();
+        }
+        pending.add(new Op(kind, name, x, y, seq, rows));
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    // ships a partial batch once its oldest op is maxDelayNanos old
+    private synchronized void runFlusher() {
+        try {
+            while (!closed) {
+                if (pending.isEmpty()) {
+                    wait();
+                    continue;
+                }
+                long left = firstPendingAt + maxDelayNanos - System.nanoTime();
+                if (left <= 0) {
+                    flush();
+                }
+                else {
+                    wait(left / 1_000_000L, (int) (left % 1_000_000L));
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ships what is pending and stops the flush timer, waiting for it.
+     * Ops logged later still ship when a batch fills or on flush().
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            flush();
+            closed = true;
+            notifyAll();
+        }
+        if (flusher != null) {
+            flusher.join();
+        }
+    }
+
+    /**
+     * Returns whether the flush timer is running.
+     *
+     * @return false without a delay or once closed
+     */
+    boolean isTimerRunning() {
+        return flusher != null && flusher.isAlive();
+    }
+
+    /**
+     * Ships whatever is pending, even if the batch is not full.
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) return;
+        Batch b = new Batch(pending.toArray(new Op[0]));
+        pending.clear();
+        transport.ship(b);
+    }
+
+    /**
+     * Returns the sequence number of the newest op in the log.
+     *
+     * @return head sequence number (0 when nothing was logged)
+     */
+    public synchronized long headSeq() {
+        return seq;
+    }
+
+    /**
+     * Returns how many ops are waiting for the next batch.
+     *
+     * @return pending op count
+     */
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,465 @@
+import java.util.Arrays;
+
+/**
+ * Trigram index over distinct city names, keyed by {@link NameDictionary}
+ * id. Every name is padded with a boundary mark on both sides and each of
+ * its distinct 3-char windows maps to a posting list of ids.
+ *
+ * Posting lists are sorted ids stored as delta varints. Updates go to a
+ * pending log that is merged into the compressed form once it reaches an
+ * eighth of the list (at least {@value #PENDING} ops), so a write costs
+ * O(1) amortized and reads, which replay the log, can run concurrently
+ * with each other. Adding an id above every listed one (the common case,
+ * since fresh ids grow) appends its varint directly.
+ *
+ * Queries only produce candidates; callers verify them against the real
+ * names with {@link #matches}.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+class TrigramIndex {
+
+    /** Boundary mark padded around names and anchored pattern ends. */
+    static final char MARK = '\u0001';
+
+    private static final int PENDING = 64;
+    private static final byte[] NO_BYTES = new byte[0];
+
+    /** One posting list. */
+    private static final class Postings {
+        byte[] data = NO_BYTES;     // delta varints of sorted ids
+        int dataLen;
+        int n;                      // ids in data
+        int last;                   // largest id in data
+        int[] log = new int[4];     // id + 1 = add, -(id + 1) = remove
+        int logLen;
+
+        int estimate() {
+            return n + logLen;
+        }
+    }
+
+    private long[] keys = new long[64];
+    private Postings[] lists = new Postings[64];
+    private int used;
+    private int names;
+
+    /**
+     * Indexes a name.
+     *
+     * @param id   dictionary id, not yet in the index
+     * @param name the name
+     */
+    public void add(int id, String name) {
+        for (long g : grams(name)) {
+            Postings p = list(g, true);
+            append(p, id + 1);
+        }
+        names = names + 1;
+    }
+
+    /**
+     * Removes a name added with the same id.
+     *
+     * @param id   dictionary id
+     * @param name the name
+     */
+    public void remove(int id, String name) {
+        for (long g : grams(name)) {
+            Postings p = list(g, false);
+            if (p != null) {
+                append(p, -(id + 1));
+            }
+        }
+        names = names - 1;
+    }
+
+    /**
+     * Returns the number of indexed names.
+     *
+     * @return name count
+     */
+    public int size() {
+        return names;
+    }
+
+    /** Removes everything. */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(lists, null);
+        used = 0;
+        names = 0;
+    }
+
+    /**
+     * Returns sorted candidate ids for a glob pattern ('*' matches any run,
+     * '?' one char), or null when the pattern has no literal run long
+     * enough to use the index and every name is a candidate.
+     *
+     * @param pattern glob pattern
+     * @return sorted candidate ids, or null
+     */
+    public int[] candidates(String pattern) {
+        long[] grams = patternGrams(pattern);
+        if (grams.length == 0) return null;
+        Postings[] ps = new Postings[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            ps[i] = list(grams[i], false);
+            if (ps[i] == null) return new int[0];
+        }
+        // smallest list first keeps the running intersection small
+        Arrays.sort(ps, (a, b) -> Integer.compare(a.estimate(), b.estimate()));
+        int[] acc = decode(ps[0]);
+        for (int i = 1; i < ps.length && acc.length > 0; i++) {
+            // verifying a few candidates beats decoding a long list
+            if (acc.length * 16 < ps[i].estimate()) break;
+            acc = intersect(acc, decode(ps[i]));
+        }
+        return acc;
+    }
+
+    /**
+     * Ranks names by how many of a fragment's trigrams they share, for
+     * misspelled queries.
+     *
+     * @param fragment  query text (no wildcards)
+     * @param minShared minimum number of shared trigrams
+     * @return ids sharing at least minShared trigrams, most shared first,
+     *         ties by id
+     */
+    public int[] similar(String fragment, int minShared) {
+        long[] grams = windows(fragment, 0, fragment.length(), false, false);
+        int[] ids = new int[0];
+        int[] hits = new int[0];
+        int len = 0;
+        for (long g : grams) {
+            Postings p = list(g, false);
+            if (p == null) continue;
+            int[] merged = new int[len + p.estimate()];
+            int[] mergedHits = new int[merged.length];
+            int[] d = decode(p);
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < len || j < d.length) {
+                if (j == d.length || (i < len && ids[i] < d[j])) {
+                    merged[k] = ids[i];
+                    mergedHits[k++] = hits[i++];
+                }
+                else if (i == len || d[j] < ids[i]) {
+                    merged[k] = d[j++];
+                    mergedHits[k++] = 1;
+                }
+                else {
+                    merged[k] = ids[i];
+                    mergedHits[k++] = hits[i++] + 1;
+                    j = j + 1;
+                }
+            }
+            ids = merged;
+            hits = mergedHits;
+            len = k;
+        }
+        long[] ranked = new long[len];
+        int m = 0;
+        for (int i = 0; i < len; i++) {
+            if (hits[i] >= minShared) {
+                // more hits sort first; ties by id
+                ranked[m++] = ((long) (Integer.MAX_VALUE - hits[i]) << 32)
+                    | ids[i];
+            }
+        }
+        Arrays.sort(ranked, 0, m);
+        int[] out = new int[m];
+        for (int i = 0; i < m; i++) {
+            out[i] = (int) ranked[i];
+        }
+        return out;
+    }
+
+    /**
+     * Returns the number of distinct trigrams in a fragment, i.e. the most
+     * a name can share with it in {@link #similar}.
+     *
+     * @param fragment query text
+     * @return trigram count
+     */
+    static int gramCount(String fragment) {
+        return windows(fragment, 0, fragment.length(), false, false).length;
+    }
+
+    /**
+     * Glob match: '*' matches any run of chars, '?' exactly one.
+     *
+     * @param pattern glob pattern
+     * @param name    text to test
+     * @return true when the whole name matches
+     */
+    static boolean matches(String pattern, String name) {
+        int p = 0;
+        int s = 0;
+        int star = -1;
+        int mark = 0;
+        while (s < name.length()) {
+            if (p < pattern.length() && (pattern.charAt(p) == '?'
+                || (pattern.charAt(p) != '*'
+                    && pattern.charAt(p) == name.charAt(s)))) {
+                p = p + 1;
+                s = s + 1;
+            }
+            else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                star = p;
+                mark = s;
+                p = p + 1;
+            }
+            else if (star >= 0) {
+                p = star + 1;
+                mark = mark + 1;
+                s = mark;
+            }
+            else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') {
+            p = p + 1;
+        }
+        return p == pattern.length();
+    }
+
+    /**
+     * Approximate heap footprint of the table and posting lists.
+     *
+     * @return bytes
+     */
+    public long estimatedBytes() {
+        long b = 12L * keys.length;
+        for (Postings p : lists) {
+            if (p != null) {
+                b = b + 40 + p.data.length + 4L * p.log.length;
+            }
+        }
+        return b;
+    }
+
+    // ---- grams ----
+
+    /** Distinct padded trigrams of a name. */
+    private static long[] grams(String name) {
+        return windows(name, 0, name.length(), true, true);
+    }
+
+    /** Distinct trigrams of every literal run of a glob pattern. */
+    private static long[] patternGrams(String pattern) {
+        long[] all = new long[0];
+        int i = 0;
+        while (i <= pattern.length()) {
+            int j = i;
+            while (j < pattern.length() && pattern.charAt(j) != '*'
+                && pattern.charAt(j) != '?') {
+                j = j + 1;
+            }
+            long[] run = windows(pattern, i, j, i == 0,
+                j == pattern.length());
+            long[] next = Arrays.copyOf(all, all.length + run.length);
+            System.arraycopy(run, 0, next, all.length, run.length);
+            all = next;
+            i = j + 1;
+        }
+        return dedupe(all, all.length);
+    }
+
+    /** Distinct windows of s[from, to), optionally padded with MARK. */
+    private static long[] windows(String s, int from, int to,
+                                  boolean markStart, boolean markEnd) {
+        int len = to - from + (markStart ? 1 : 0) + (markEnd ? 1 : 0);
+        if (len < 3) return new long[0];
+        char[] c = new char[len];
+        int k = 0;
+        if (markStart) c[k++] = MARK;
+        s.getChars(from, to, c, k);
+        if (markEnd) c[len - 1] = MARK;
+        long[] out = new long[len - 2];
+        for (int i = 0; i + 2 < len; i++) {
+            out[i] = ((long) c[i] << 32) | ((long) c[i + 1] << 16) | c[i + 2];
+        }
+        return dedupe(out, out.length);
+    }
+
+    private static long[] dedupe(long[] a, int n) {
+        Arrays.sort(a, 0, n);
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (m == 0 || a[m - 1] != a[i]) {
+                a[m++] = a[i];
+            }
+        }
+        return Arrays.copyOf(a, m);
+    }
+
+    // ---- table ----
+
+    private Postings list(long gram, boolean create) {
+        int mask = keys.length - 1;
+        int i = mix(gram) & mask;
+        while (lists[i] != null) {
+            if (keys[i] == gram) return lists[i];
+            i = (i + 1) & mask;
+        }
+        if (!create) return null;
+        keys[i] = gram;
+        lists[i] = new Postings();
+        used = used + 1;
+        if (used * 4 > keys.length * 3) {
+            grow();
+            return list(gram, false);
+        }
+        return lists[i];
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Postings[] oldLists = lists;
+        keys = new long[oldKeys.length * 2];
+        lists = new Postings[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldLists[i] == null) continue;
+            int j = mix(oldKeys[i]) & mask;
+            while (lists[j] != null) {
+                j = (j + 1) & mask;
+            }
+            keys[j] = oldKeys[i];
+            lists[j] = oldLists[i];
+        }
+    }
+
+    private static int mix(long g) {
+        long h = g * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // ---- posting lists ----
+
+    private static void append(Postings p, int op) {
+        if (op > 0 && p.logLen == 0 && (p.n == 0 || op - 1 > p.last)) {
+            int id = op - 1;
+            if (p.dataLen + 5 > p.data.length) {
+                p.data = Arrays.copyOf(p.data, Math.max(16, p.dataLen * 2));
+            }
+            p.dataLen = putVarint(p.data, p.dataLen, id - p.last);
+            p.last = id;
+            p.n = p.n + 1;
+            return;
+        }
+        if (p.logLen == p.log.length) {
+            p.log = Arrays.copyOf(p.log, p.logLen * 2);
+        }
+        p.log[p.logLen] = op;
+        p.logLen = p.logLen + 1;
+        if (p.logLen >= Math.max(PENDING, p.n >>> 3)) {
+            encode(p, decode(p));
+            p.logLen = 0;
+            p.log = new int[4];
+        }
+    }
+
+    /** Sorted ids of a list: the compressed part with the log replayed. */
+    private static int[] decode(Postings p) {
+        int[] base = new int[p.n];
+        int pos = 0;
+        int prev = 0;
+        for (int i = 0; i < p.n; i++) {
+            int v = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = p.data[pos++];
+                v = v | ((b & 0x7F) << shift);
+                shift = shift + 7;
+            } while ((b & 0x80) != 0);
+            prev = prev + v;
+            base[i] = prev;
+        }
+        if (p.logLen == 0) return base;
+        // (id, sequence, add?) sorted: the last op on each id wins
+        long[] ops = new long[p.logLen];
+        for (int k = 0; k < p.logLen; k++) {
+            int op = p.log[k];
+            ops[k] = ((long) (Math.abs(op) - 1) << 32) | ((long) k << 1)
+                | (op > 0 ? 1 : 0);
+        }
+        Arrays.sort(ops);
+        int[] out = new int[p.n + p.logLen];
+        int i = 0;
+        int m = 0;
+        int q = 0;
+        while (q < ops.length) {
+            int id = (int) (ops[q] >>> 32);
+            while (q + 1 < ops.length && (int) (ops[q + 1] >>> 32) == id) {
+                q = q + 1;
+            }
+            boolean add = (ops[q] & 1) != 0;
+            q = q + 1;
+            while (i < base.length && base[i] < id) {
+                out[m++] = base[i++];
+            }
+            if (i < base.length && base[i] == id) {
+                i = i + 1;
+            }
+            if (add) {
+                out[m++] = id;
+            }
+        }
+        while (i < base.length) {
+            out[m++] = base[i++];
+        }
+        return Arrays.copyOf(out, m);
+    }
+
+    private static void encode(Postings p, int[] ids) {
+        byte[] out = new byte[ids.length * 5];
+        int pos = 0;
+        int prev = 0;
+        for (int id : ids) {
+            pos = putVarint(out, pos, id - prev);
+            prev = id;
+        }
+        p.data = Arrays.copyOf(out, pos);
+        p.dataLen = pos;
+        p.last = prev;
+        p.n = ids.length;
+    }
+
+    private static int putVarint(byte[] out, int pos, int v) {
+        while ((v & ~0x7F) != 0) {
+            out[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v = v >>> 7;
+        }
+        out[pos++] = (byte) v;
+        return pos;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i = i + 1;
+            }
+            else if (a[i] > b[j]) {
+                j = j + 1;
+            }
+            else {
+                out[k++] = a[i];
+                i = i + 1;
+                j = j + 1;
+            }
+        }
+        return Arrays.copyOf(out, k);
+    }
+}
@@ -0,0 +1,107 @@
+import student.TestCase;
+
+/**
+ * Tests the trigram name index.
+ *
+ * @author Parth Mehta (pmehta24)
+ * @author Anurag Pokala (anuragp34)
+ * @version 2025-10-06
+ */
+public class TrigramIndexTest extends TestCase {
+
+    /**
+     * Glob matching of '*' and '?'.
+     */
+    public void testMatches() {
+        assertTrue(TrigramIndex.matches("*field*", "Springfield"));
+        assertTrue(TrigramIndex.matches("*field*", "Fieldfield"));
+        assertFalse(TrigramIndex.matches("*field*", "Field"));
+        assertTrue(TrigramIndex.matches("San ?os*", "San Jose"));
+        assertFalse(TrigramIndex.matches("San ?os*", "San Jse"));
+        assertTrue(TrigramIndex.matches("*", ""));
+        assertTrue(TrigramIndex.matches("", ""));
+        assertFalse(TrigramIndex.matches("", "a"));
+        assertTrue(TrigramIndex.matches("a*b*c", "aXbYbc"));
+        assertFalse(TrigramIndex.matches("a*b*c", "aXbYbcd"));
+        assertTrue(TrigramIndex.matches("**?", "z"));
+    }
+
+    /**
+     * Candidates always cover the real matches, through adds, removes
+     * and compaction of the posting logs.
+     */
+    public void testCandidatesCoverMatches() {
+        TrigramIndex t = new TrigramIndex();
+        String[] names = new String[3000];
+        boolean[] live = new boolean[names.length];
+        java.util.Random rnd = new java.util.Random(41);
+        String[] parts = {"spring", "field", "san", " ", "jose", "a", "ville",
+            "ton"};
+        for (int i = 0; i < names.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            int k = 1 + rnd.nextInt(4);
+            for (int j = 0; j < k; j++) {
+                sb.append(parts[rnd.nextInt(parts.length)]);
+            }
+            names[i] = sb.toString();
+        }
+        for (int step = 0; step < 20000; step++) {
+            int id = rnd.nextInt(names.length);
+            if (live[id]) {
+                t.remove(id, names[id]);
+            }
+            else {
+                t.add(id, names[id]);
+            }
+            live[id] = !live[id];
+        }
+        String[] patterns = {"*field*", "spring*", "*ton", "san?jose*",
+            "*ville*ton*", "a", "*a*", "fieldfield", "zzz*"};
+        for (String p : patterns) {
+            int[] c = t.candidates(p);
+            java.util.Set<Integer> cand = new java.util.HashSet<>();
+            if (c != null) {
+                for (int i = 1; i < c.length; i++) {
+                    assertTrue(c[i - 1] < c[i]);
+                }
+                for (int id : c) {
+                    cand.add(id);
+                }
+            }
+            for (int id = 0; id < names.length; id++) {
+                if (live[id] && TrigramIndex.matches(p, names[id])) {
+                    assertTrue(p, c == null || cand.contains(id));
+                }
+            }
+        }
+        assertNull(t.candidates("*a*"));
+        assertEquals(0, t.candidates("zzz*").length);
+        int n = 0;
+        for (boolean b : live) {
+            n = n + (b ? 1 : 0);
+        }
+        assertEquals(n, t.size());
+        assertTrue(t.estimatedBytes() > 0);
+    }
+
+    /**
+     * Similar names are ranked by shared trigrams.
+     */
+    public void testSimilar() {
+        TrigramIndex t = new TrigramIndex();
+        t.add(0, "Springfield");
+        t.add(1, "Springdale");
+        t.add(2, "Fairfield");
+        t.add(3, "Boston");
+        int[] ids = t.similar("Sprngfield", 3);
+        assertEquals(2, ids.length);
+        assertEquals(0, ids[0]);
+        assertEquals(2, ids[1]);
+        assertEquals(3, t.similar("Sprngfield", 1).length);
+        assertEquals(0, t.similar("xyz", 1).length);
+        assertEquals(8, TrigramIndex.gramCount("Sprngfield"));
+        t.clear();
+        assertEquals(0, t.size());
+        assertEquals(0, t.similar("Spring", 1).length);
+    }
+}